@@ -0,0 +1,57 @@
+package com.it666.annotation.config;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.context.SaHolder;
+import cn.dev33.satoken.context.model.SaStorage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 请求级的角色与权限缓存
+ * <p>
+ * 一个请求里 checkRoleOr、checkPermission 等每次校验都会回调 StpInterface，每次都要重新读取账号 Session。
+ * 这里把第一次读取的结果放进本次请求的 SaStorage，同一请求内后续的校验直接从内存回答；
+ * 请求结束后随请求一起丢弃，下一个请求会重新读取，权限变更不会被缓存住。
+ * 不在 Web 请求中调用时（没有 SaTokenContext）不缓存。
+ *
+ * @author 程序员NEO
+ */
+final class AuthorizationContext {
+
+    private static final String STORAGE_KEY_PREFIX = AuthorizationContext.class.getName() + ":";
+
+    private final List<String> roles;
+    private final List<String> permissions;
+
+    AuthorizationContext(List<String> roles, List<String> permissions) {
+        this.roles = Collections.unmodifiableList(roles);
+        this.permissions = Collections.unmodifiableList(permissions);
+    }
+
+    /**
+     * 本次请求中指定账号的角色与权限，第一次调用时由 {@code loader} 加载
+     */
+    static AuthorizationContext get(Object loginId, String loginType, Supplier<AuthorizationContext> loader) {
+        if (!SaManager.getSaTokenContext().isValid()) {
+            return loader.get();
+        }
+        SaStorage storage = SaHolder.getStorage();
+        String key = STORAGE_KEY_PREFIX + loginType + ":" + loginId;
+        AuthorizationContext context = (AuthorizationContext) storage.get(key);
+        if (context == null) {
+            context = loader.get();
+            storage.set(key, context);
+        }
+        return context;
+    }
+
+    List<String> getRoles() {
+        return roles;
+    }
+
+    List<String> getPermissions() {
+        return permissions;
+    }
+}
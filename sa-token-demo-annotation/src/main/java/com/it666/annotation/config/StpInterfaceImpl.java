@@ -1,5 +1,6 @@
 package com.it666.annotation.config;
 
+import cn.dev33.satoken.session.SaSession;
 import cn.dev33.satoken.stp.StpInterface;
 import cn.dev33.satoken.stp.StpUtil;
 import org.springframework.stereotype.Component;
@@ -11,6 +12,8 @@ import java.util.List;
  * Sa-Token 权限认证接口实现
  * <p>
  * 用于告诉 Sa-Token 如何获取用户的角色和权限信息
+ * <p>
+ * 同一请求内的多次校验共用一次读取结果，见 {@link AuthorizationContext}
  *
  * @author 程序员NEO
  */
@@ -24,15 +27,9 @@ public class StpInterfaceImpl implements StpInterface {
      * @param loginType 登录类型
      * @return 权限码集合
      */
-    @SuppressWarnings("unchecked")
     @Override
     public List<String> getPermissionList(Object loginId, String loginType) {
-        // 从 Session 中获取权限列表
-        Object permissionObj = StpUtil.getSession().get("permissionList");
-        if (permissionObj instanceof List) {
-            return (List<String>) permissionObj;
-        }
-        return new ArrayList<>();
+        return AuthorizationContext.get(loginId, loginType, () -> load(loginId)).getPermissions();
     }
 
     /**
@@ -44,12 +41,27 @@ public class StpInterfaceImpl implements StpInterface {
      */
     @Override
     public List<String> getRoleList(Object loginId, String loginType) {
-        // 从 Session 中获取角色
+        return AuthorizationContext.get(loginId, loginType, () -> load(loginId)).getRoles();
+    }
+
+    /**
+     * 从 Session 中读取角色和权限列表，每个请求只读取一次
+     */
+    @SuppressWarnings("unchecked")
+    private AuthorizationContext load(Object loginId) {
+        SaSession session = StpUtil.getSessionByLoginId(loginId);
+
         List<String> roleList = new ArrayList<>();
-        String role = (String) StpUtil.getSession().get("role");
+        String role = (String) session.get("role");
         if (role != null) {
             roleList.add(role);
         }
-        return roleList;
+
+        List<String> permissionList = new ArrayList<>();
+        Object permissionObj = session.get("permissionList");
+        if (permissionObj instanceof List) {
+            permissionList.addAll((List<String>) permissionObj);
+        }
+        return new AuthorizationContext(roleList, permissionList);
     }
 }
@@ -0,0 +1,82 @@
+package com.it666.bench;
+
+import com.it666.redis.key.CompactKeyCodec;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Redis memory per login with plain and with {@link CompactKeyCodec} keys, run as a plain program:
+ * <pre>
+ * java -cp sa-token-demo-bench/target/benchmarks.jar com.it666.bench.CompactKeyMemoryProbe [host:port] [logins]
+ * </pre>
+ * Every login writes what {@code StpUtil.login} and an active-timeout renewal leave in Redis: the token
+ * key, its last-active key and the account session key, with a session value of the size the redis
+ * module stores. Database 15 is flushed before each layout and the growth of {@code used_memory}
+ * is divided by the number of logins, so run it against an otherwise idle Redis.
+ */
+public final class CompactKeyMemoryProbe {
+
+    private static final int DATABASE = 15;
+    private static final long TIMEOUT = 3600;
+    private static final int PIPELINE = 1000;
+
+    private CompactKeyMemoryProbe() {
+    }
+
+    public static void main(String[] args) {
+        String endpoint = args.length > 0 ? args[0] : "127.0.0.1:6379";
+        int logins = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(
+                endpoint.substring(0, endpoint.lastIndexOf(':')),
+                Integer.parseInt(endpoint.substring(endpoint.lastIndexOf(':') + 1)));
+        server.setDatabase(DATABASE);
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(server);
+        connectionFactory.afterPropertiesSet();
+        CompactKeyCodec codec = new CompactKeyCodec("satoken", "login");
+        byte[] session = new byte[600];
+        Arrays.fill(session, (byte) 'x');
+
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            for (boolean compact : new boolean[]{false, true}) {
+                connection.serverCommands().flushDb();
+                long before = usedMemory(connection);
+                for (int from = 0; from < logins; from += PIPELINE) {
+                    connection.openPipeline();
+                    for (int i = from; i < Math.min(logins, from + PIPELINE); i++) {
+                        String loginId = String.valueOf(10_000_000 + i);
+                        String token = UUID.randomUUID().toString();
+                        byte[] lastActive = String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8);
+                        connection.stringCommands().setEx(key(codec, compact, "token:" + token), TIMEOUT,
+                                loginId.getBytes(StandardCharsets.UTF_8));
+                        connection.stringCommands().setEx(key(codec, compact, "last-active:" + token), TIMEOUT, lastActive);
+                        connection.stringCommands().setEx(key(codec, compact, "session:" + loginId), TIMEOUT, session);
+                    }
+                    connection.closePipeline();
+                }
+                long grown = usedMemory(connection) - before;
+                System.out.printf("%-7s %,d logins: %,d bytes, %.1f bytes per login (3 keys)%n",
+                        compact ? "compact" : "plain", logins, grown, (double) grown / logins);
+            }
+            connection.serverCommands().flushDb();
+        } finally {
+            connectionFactory.destroy();
+        }
+    }
+
+    private static byte[] key(CompactKeyCodec codec, boolean compact, String suffix) {
+        String key = "satoken:login:" + suffix;
+        return compact ? codec.encode(key) : CompactKeyCodec.plain(key);
+    }
+
+    private static long usedMemory(RedisConnection connection) {
+        Properties info = connection.serverCommands().info("memory");
+        return Long.parseLong(info.getProperty("used_memory"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.it666.bench;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.dao.SaTokenDaoDefaultImpl;
+import com.it666.redis.memory.StripedMemorySaTokenDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code SaTokenDaoDefaultImpl} against {@link StripedMemorySaTokenDao} with a million live tokens.
+ * <p>
+ * Use {@code -t} to set the number of threads; every thread works on random keys of the shared set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class MemoryDaoBenchmark {
+
+    private static final long TIMEOUT = 3600;
+
+    @Param({"default", "striped"})
+    public String dao;
+
+    @Param({"1000000"})
+    public int tokens;
+
+    private SaTokenDao store;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = create(dao, tokens);
+        store.init();
+        keys = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            keys[i] = "satoken:login:token:" + UUID.randomUUID();
+            store.set(keys[i], String.valueOf(10000 + i), TIMEOUT);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.destroy();
+    }
+
+    @Benchmark
+    public String get() {
+        return store.get(randomKey());
+    }
+
+    @Benchmark
+    public long getTimeout() {
+        return store.getTimeout(randomKey());
+    }
+
+    /**
+     * 80% get, 10% update, 10% set with a fresh TTL; the live set stays at {@link #tokens}.
+     */
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = keys[random.nextInt(keys.length)];
+        int op = random.nextInt(10);
+        if (op == 0) {
+            store.update(key, "updated");
+            return null;
+        }
+        if (op == 1) {
+            store.set(key, "renewed", TIMEOUT);
+            return null;
+        }
+        return store.get(key);
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    static SaTokenDao create(String mode, long maxEntries) {
+        if ("striped".equals(mode)) {
+            return new StripedMemorySaTokenDao(maxEntries * 2, 0);
+        }
+        return new SaTokenDaoDefaultImpl();
+    }
+}
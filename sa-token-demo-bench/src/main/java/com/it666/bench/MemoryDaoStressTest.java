@@ -0,0 +1,174 @@
+package com.it666.bench;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import com.it666.redis.memory.StripedMemorySaTokenDao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency stress check for the in-memory daos, run as a plain program:
+ * <pre>
+ * java -cp sa-token-demo-bench/target/benchmarks.jar com.it666.bench.MemoryDaoStressTest [threads] [seconds]
+ * </pre>
+ * <ol>
+ *     <li>Model check: every thread owns a key range and runs random set / update / delete /
+ *     updateTimeout / get against both daos, comparing each read with its own model.</li>
+ *     <li>Expiry: short-lived keys must disappear through the timing wheel without being read.</li>
+ *     <li>Bound: inserting twice the capacity from all threads must never exceed it.</li>
+ * </ol>
+ * Exits with status 1 on the first violation.
+ */
+public final class MemoryDaoStressTest {
+
+    private static final int KEYS_PER_THREAD = 5_000;
+
+    private MemoryDaoStressTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        for (String mode : new String[]{"default", "striped"}) {
+            SaTokenDao dao = MemoryDaoBenchmark.create(mode, (long) threads * KEYS_PER_THREAD);
+            dao.init();
+            long ops = modelCheck(dao, threads, seconds);
+            System.out.printf("%-8s model check ok: %,d ops in %ds with %d threads (%,d ops/s)%n",
+                    mode, ops, seconds, threads, ops / seconds);
+            dao.destroy();
+        }
+
+        StripedMemorySaTokenDao wheel = new StripedMemorySaTokenDao(1_000_000, 0);
+        wheel.init();
+        expiryCheck(wheel, threads);
+        wheel.destroy();
+
+        boundCheck(threads);
+        System.out.println("all checks passed");
+    }
+
+    private static long modelCheck(SaTokenDao dao, int threads, int seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String prefix = "satoken:login:token:t" + t + ":";
+            results.add(pool.submit(() -> {
+                Map<String, String> model = new HashMap<>();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long ops = 0;
+                while (System.nanoTime() < deadline) {
+                    String key = prefix + random.nextInt(KEYS_PER_THREAD);
+                    switch (random.nextInt(6)) {
+                        case 0:
+                            String value = Long.toString(random.nextLong());
+                            dao.set(key, value, 3600);
+                            model.put(key, value);
+                            break;
+                        case 1:
+                            String updated = "u" + ops;
+                            dao.update(key, updated);
+                            model.computeIfPresent(key, (k, v) -> updated);
+                            break;
+                        case 2:
+                            dao.delete(key);
+                            model.remove(key);
+                            break;
+                        case 3:
+                            // only live keys: the default dao records an expiry even for a missing key
+                            if (!model.containsKey(key)) {
+                                break;
+                            }
+                            dao.updateTimeout(key, random.nextBoolean() ? SaTokenDao.NEVER_EXPIRE : 7200);
+                            break;
+                        default:
+                            String expected = model.get(key);
+                            String actual = dao.get(key);
+                            if (expected == null ? actual != null : !expected.equals(actual)) {
+                                fail(key + " expected " + expected + " but was " + actual);
+                            }
+                            if ((expected == null) != (dao.getTimeout(key) == SaTokenDao.NOT_VALUE_EXPIRE)) {
+                                fail(key + " timeout does not match presence");
+                            }
+                    }
+                    ops++;
+                }
+                return ops;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        pool.shutdown();
+        return total;
+    }
+
+    private static void expiryCheck(StripedMemorySaTokenDao dao, int threads) throws Exception {
+        int perThread = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            results.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    dao.set("satoken:login:last-active:t" + id + ":" + i, "x", 1 + (i % 2));
+                    dao.set("satoken:login:token:t" + id + ":" + i, "x", 3600);
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        long live = (long) threads * perThread;
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (dao.size() > live && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        Map<String, Object> stats = dao.storageStats();
+        if (dao.size() != live) {
+            fail("expected " + live + " live entries after expiry but found " + dao.size() + " " + stats);
+        }
+        System.out.println("striped  expiry ok: " + stats);
+    }
+
+    private static void boundCheck(int threads) throws Exception {
+        int capacity = 100_000;
+        StripedMemorySaTokenDao dao = new StripedMemorySaTokenDao(capacity, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>();
+        int perThread = capacity * 2 / threads;
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            results.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    dao.set("satoken:login:token:t" + id + ":" + i, "x", 3600);
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+        Map<String, Object> stats = dao.storageStats();
+        if (dao.size() > capacity || (long) stats.get("evictions") < (long) perThread * threads - capacity) {
+            fail("bound violated: " + stats);
+        }
+        System.out.println("striped  bound ok: " + stats);
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAILED: " + message);
+        System.exit(1);
+    }
+}
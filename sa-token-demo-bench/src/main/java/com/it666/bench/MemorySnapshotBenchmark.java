@@ -0,0 +1,87 @@
+package com.it666.bench;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.session.SaSession;
+import com.it666.redis.memory.MemorySnapshotStore;
+import com.it666.redis.memory.StripedMemorySaTokenDao;
+import com.it666.redis.serializer.SaSerializerTemplateForBinary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cold-start restore of {@link StripedMemorySaTokenDao} from its memory-mapped snapshot.
+ * <p>
+ * The snapshot holds {@code sessions} logins (a token key and an account session each), taken
+ * once at trial setup; a tenth of them expire right after it is written, so the restore also
+ * covers skipping expired records. Each measured shot is one cold load into a new dao.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class MemorySnapshotBenchmark {
+
+    @Param({"300000"})
+    public int sessions;
+
+    private Path directory;
+    private StripedMemorySaTokenDao source;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SaManager.setSaSerializerTemplate(new SaSerializerTemplateForBinary());
+        directory = Files.createTempDirectory("sa-token-snapshot");
+        source = new StripedMemorySaTokenDao(sessions * 4L, 0, new MemorySnapshotStore(directory), 3_600_000);
+        source.init();
+        for (int i = 0; i < sessions; i++) {
+            String loginId = String.valueOf(10000 + i);
+            long timeout = i % 10 == 0 ? 1 : 2_592_000;
+            SaSession session = SessionFixtures.small();
+            session.setId("satoken:login:session:" + loginId);
+            session.setLoginId(loginId);
+            source.set("satoken:login:token:" + UUID.randomUUID(), loginId, timeout);
+            source.setSession(session, timeout);
+        }
+        source.persist();
+        Thread.sleep(1_100);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        source.destroy();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long restore() {
+        StripedMemorySaTokenDao restored = new StripedMemorySaTokenDao(sessions * 4L, 0,
+                new MemorySnapshotStore(directory), 3_600_000);
+        restored.init();
+        long size = restored.size();
+        restored.destroy();
+        return size;
+    }
+}
@@ -0,0 +1,151 @@
+package com.it666.bench;
+
+import cn.dev33.satoken.strategy.SaStrategy;
+import com.it666.interceptor.permission.PermissionBits;
+import com.it666.interceptor.permission.PermissionRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Permission checks against a user holding {@code permissions} codes, the way the interceptor
+ * module's default {@code StpLogic} does them ({@code list}: {@code SaStrategy.hasElement} over the
+ * {@code Arrays.asList} of the session's {@code String[]}) and the way {@code PermissionBitsStpLogic}
+ * does them ({@code bits}: registry lookup plus bit test or mask operation).
+ * <p>
+ * The registry also knows as many codes the user does not hold, so {@code miss} looks up an
+ * interned code. {@code and} checks 5 held codes, {@code or} 4 missing codes and one held code last.
+ * {@code orUnknown} checks 5 codes that were never registered, the case of a route guarded by a
+ * permission no logged-in account holds yet.
+ * Codes are drawn from 256 precomputed sets per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PermissionCheckBenchmark {
+
+    private static final int SAMPLES = 256;
+
+    @Param({"list", "bits"})
+    public String check;
+
+    @Param({"500"})
+    public int permissions;
+
+    private boolean useBits;
+    private PermissionRegistry registry;
+    private List<String> list;
+    private long[] bits;
+    private String[] hits;
+    private String[] misses;
+    private String[][] ands;
+    private String[][] ors;
+    private String[][] unknowns;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] granted = new String[permissions];
+        String[] other = new String[permissions];
+        for (int i = 0; i < permissions; i++) {
+            granted[i] = "module" + i / 10 + ".action" + i % 10;
+            other[i] = "other" + i / 10 + ".action" + i % 10;
+        }
+        useBits = "bits".equals(check);
+        registry = new PermissionRegistry();
+        list = Arrays.asList(granted);
+        bits = registry.encode(granted);
+        registry.encode(other);
+
+        Random random = new Random(42);
+        hits = new String[SAMPLES];
+        misses = new String[SAMPLES];
+        ands = new String[SAMPLES][5];
+        ors = new String[SAMPLES][5];
+        unknowns = new String[SAMPLES][5];
+        for (int i = 0; i < SAMPLES; i++) {
+            hits[i] = granted[random.nextInt(permissions)];
+            misses[i] = other[random.nextInt(permissions)];
+            for (int j = 0; j < 5; j++) {
+                ands[i][j] = granted[random.nextInt(permissions)];
+                ors[i][j] = j < 4 ? other[random.nextInt(permissions)] : granted[random.nextInt(permissions)];
+                unknowns[i][j] = "unknown" + random.nextInt(permissions) + ".action" + j;
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return has(hits[nextSample()]);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return has(misses[nextSample()]);
+    }
+
+    @Benchmark
+    public boolean and() {
+        String[] codes = ands[nextSample()];
+        if (useBits) {
+            return registry.containsAll(codes) && PermissionBits.containsAll(bits, registry.mask(codes));
+        }
+        for (String code : codes) {
+            if (!SaStrategy.instance.hasElement.apply(list, code)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean or() {
+        return or(ors[nextSample()]);
+    }
+
+    @Benchmark
+    public boolean orUnknown() {
+        return or(unknowns[nextSample()]);
+    }
+
+    private boolean or(String[] codes) {
+        if (useBits) {
+            return PermissionBits.intersects(bits, registry.mask(codes));
+        }
+        for (String code : codes) {
+            if (SaStrategy.instance.hasElement.apply(list, code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean has(String code) {
+        if (useBits) {
+            return PermissionBits.has(bits, registry.indexOf(code));
+        }
+        return SaStrategy.instance.hasElement.apply(list, code);
+    }
+
+    private int nextSample() {
+        next = (next + 1) & (SAMPLES - 1);
+        return next;
+    }
+}
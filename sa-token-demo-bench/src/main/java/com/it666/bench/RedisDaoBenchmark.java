@@ -0,0 +1,125 @@
+package com.it666.bench;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.dao.SaTokenDaoForRedisTemplate;
+import com.it666.redis.lettuce.LettuceAsyncSaTokenDao;
+import io.lettuce.core.RedisURI;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The template dao on a pooled connection factory against {@link LettuceAsyncSaTokenDao}, with
+ * 512 client threads by default (override with {@code -t}). Needs a running Redis; the keys are
+ * written to database 15 of {@code endpoint} and expire after an hour.
+ * <ul>
+ *     <li>{@code template-shared}: the redis module's own setup, pool of 200 with Spring's default
+ *     shared native connection (plain commands all go over one connection, callers block on it).</li>
+ *     <li>{@code template-pooled}: the same pool with {@code shareNativeConnection=false}, so every
+ *     command borrows one of the 200 connections.</li>
+ *     <li>{@code async} / {@code async-await}: two multiplexed connections, writes fire-and-forget or awaited.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(512)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class RedisDaoBenchmark {
+
+    private static final int DATABASE = 15;
+    private static final long TIMEOUT = 3600;
+
+    @Param({"template-shared", "template-pooled", "async", "async-await"})
+    public String dao;
+
+    @Param({"127.0.0.1:6379"})
+    public String endpoint;
+
+    @Param({"10000"})
+    public int tokens;
+
+    private SaTokenDao store;
+    private LettuceConnectionFactory connectionFactory;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String host = endpoint.substring(0, endpoint.lastIndexOf(':'));
+        int port = Integer.parseInt(endpoint.substring(endpoint.lastIndexOf(':') + 1));
+        if (dao.startsWith("template")) {
+            RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(host, port);
+            server.setDatabase(DATABASE);
+            GenericObjectPoolConfig<Object> pool = new GenericObjectPoolConfig<>();
+            pool.setMaxTotal(200);
+            pool.setMaxIdle(10);
+            pool.setMinIdle(0);
+            pool.setMaxWait(Duration.ofMillis(-1));
+            connectionFactory = new LettuceConnectionFactory(server, LettucePoolingClientConfiguration.builder()
+                    .poolConfig(pool).commandTimeout(Duration.ofSeconds(10)).build());
+            connectionFactory.setShareNativeConnection(dao.equals("template-shared"));
+            connectionFactory.afterPropertiesSet();
+            SaTokenDaoForRedisTemplate templateDao = new SaTokenDaoForRedisTemplate();
+            templateDao.init(connectionFactory);
+            store = templateDao;
+        } else {
+            RedisURI uri = RedisURI.builder().withHost(host).withPort(port).withDatabase(DATABASE)
+                    .withTimeout(Duration.ofSeconds(10)).build();
+            store = LettuceAsyncSaTokenDao.connect(uri, 2, dao.equals("async-await"));
+        }
+        keys = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            keys[i] = "bench:login:token:" + UUID.randomUUID();
+            store.set(keys[i], String.valueOf(10000 + i), TIMEOUT);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.destroy();
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Benchmark
+    public String get() {
+        return store.get(keys[ThreadLocalRandom.current().nextInt(keys.length)]);
+    }
+
+    /**
+     * What a logged-in request does: 80% token lookups, 20% session writes that keep the TTL.
+     */
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = keys[random.nextInt(keys.length)];
+        if (random.nextInt(10) < 8) {
+            return store.get(key);
+        }
+        store.update(key, String.valueOf(random.nextInt()));
+        return key;
+    }
+}
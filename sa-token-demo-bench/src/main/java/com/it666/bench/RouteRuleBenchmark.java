@@ -0,0 +1,186 @@
+package com.it666.bench;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.context.mock.SaRequestForMock;
+import cn.dev33.satoken.context.mock.SaResponseForMock;
+import cn.dev33.satoken.context.mock.SaStorageForMock;
+import cn.dev33.satoken.fun.SaFunction;
+import cn.dev33.satoken.router.SaRouter;
+import cn.dev33.satoken.strategy.SaStrategy;
+import com.it666.interceptor.router.RouteRule;
+import com.it666.interceptor.router.RouteRuleTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the interceptor module's route rules: the {@code SaRouter} lambda chain it used
+ * to declare versus the same rules compiled into a {@link RouteRuleTable}.
+ * <p>
+ * The rule set grows the way the interceptor's does: a {@code /**} login rule with exclusions first,
+ * then one rule per module ({@code /mN/**}, {@code /mN/*}{@code /detail} or {@code /mN/{id}/items/**}),
+ * and a {@code /**} logging rule last. Requests cycle through 256 fixed paths, mostly hits on random
+ * modules plus excluded and unknown paths. The setup fails if both forms do not run the same checks
+ * for every path; checks only count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteRuleBenchmark {
+
+    private static final int PATHS = 256;
+
+    @Param({"10", "100", "1000"})
+    public int rules;
+
+    private RouteRuleTable table;
+    private String[][] match;
+    private String[][] notMatch;
+    private SaFunction[] checks;
+    private String[] paths;
+    private SaRequestForMock request;
+    private int next;
+    private long checked;
+    private List<Integer> trace;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // what sa-token-spring-boot-starter installs
+        AntPathMatcher pathMatcher = new AntPathMatcher();
+        SaStrategy.instance.routeMatcher = pathMatcher::match;
+        request = new SaRequestForMock();
+        SaManager.getSaTokenContext().setContext(request, new SaResponseForMock(), new SaStorageForMock());
+
+        match = new String[rules][];
+        notMatch = new String[rules][];
+        checks = new SaFunction[rules];
+        RouteRuleTable.Builder builder = RouteRuleTable.builder();
+        for (int i = 0; i < rules; i++) {
+            int rule = i;
+            if (i == 0) {
+                match[i] = new String[]{"/**"};
+                notMatch[i] = new String[]{"/auth/doLogin", "/auth/register", "/favicon.ico", "/error", "/m1/public/**"};
+            } else if (i == rules - 1) {
+                match[i] = new String[]{"/**"};
+                notMatch[i] = new String[0];
+            } else {
+                switch (i % 3) {
+                    case 0:
+                        match[i] = new String[]{"/m" + i + "/*/detail"};
+                        break;
+                    case 1:
+                        match[i] = new String[]{"/m" + i + "/**"};
+                        break;
+                    default:
+                        match[i] = new String[]{"/m" + i + "/{id}/items/**"};
+                        break;
+                }
+                notMatch[i] = new String[0];
+            }
+            checks[i] = () -> {
+                checked++;
+                if (trace != null) {
+                    trace.add(rule);
+                }
+            };
+            builder.rule("r" + i).match(match[i]).notMatch(notMatch[i]).check(checks[i]);
+        }
+        table = builder.build();
+
+        Random random = new Random(42);
+        paths = new String[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            int module = 1 + random.nextInt(Math.max(1, rules - 2));
+            switch (i % 8) {
+                case 0:
+                    paths[i] = "/auth/doLogin";
+                    break;
+                case 1:
+                    paths[i] = "/unknown/" + i;
+                    break;
+                case 2:
+                    paths[i] = "/m1/public/" + i;
+                    break;
+                case 3:
+                    paths[i] = "/m" + module + "/" + i + "/detail";
+                    break;
+                case 4:
+                    paths[i] = "/m" + module + "/" + i + "/items/" + random.nextInt(100);
+                    break;
+                default:
+                    paths[i] = "/m" + module + "/list";
+                    break;
+            }
+        }
+        verify();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SaManager.getSaTokenContext().clearContext();
+    }
+
+    /**
+     * What {@code SaTokenConfigure} did before: one {@code SaRouter} statement per rule.
+     */
+    @Benchmark
+    public long chain() {
+        request.requestPath = nextPath();
+        for (int i = 0; i < rules; i++) {
+            SaRouter.match(match[i]).notMatch(notMatch[i]).check(checks[i]);
+        }
+        return checked;
+    }
+
+    @Benchmark
+    public long compiled() {
+        table.run(nextPath());
+        return checked;
+    }
+
+    private String nextPath() {
+        String path = paths[next];
+        next = (next + 1) & (PATHS - 1);
+        return path;
+    }
+
+    private void verify() {
+        trace = new ArrayList<>();
+        for (String path : paths) {
+            trace.clear();
+            request.requestPath = path;
+            for (int i = 0; i < rules; i++) {
+                SaRouter.match(match[i]).notMatch(notMatch[i]).check(checks[i]);
+            }
+            List<Integer> expected = new ArrayList<>(trace);
+            trace.clear();
+            table.run(path);
+            if (!expected.equals(trace)) {
+                throw new IllegalStateException(path + ": chain ran " + expected + ", table ran " + trace);
+            }
+        }
+        List<RouteRule> sample = table.match(paths[3]);
+        System.out.println();
+        System.out.println(paths[3] + " -> " + sample);
+        trace = null;
+    }
+}
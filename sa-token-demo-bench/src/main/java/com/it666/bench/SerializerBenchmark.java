@@ -0,0 +1,95 @@
+package com.it666.bench;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.json.SaJsonTemplateForJackson;
+import cn.dev33.satoken.serializer.SaSerializerTemplate;
+import cn.dev33.satoken.serializer.impl.SaSerializerTemplateForJdkUseBase64;
+import cn.dev33.satoken.serializer.impl.SaSerializerTemplateForJdkUseHex;
+import cn.dev33.satoken.serializer.impl.SaSerializerTemplateForJdkUseISO_8859_1;
+import cn.dev33.satoken.serializer.impl.SaSerializerTemplateForJson;
+import cn.dev33.satoken.session.SaSession;
+import com.it666.redis.serializer.CompressingSerializerTemplate;
+import com.it666.redis.serializer.SaSerializerTemplateForBinary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize / deserialize cost of every {@code demo.serializer} mode.
+ * <p>
+ * Run with {@code -prof gc} to get the allocation rate; the payload size that ends up in Redis
+ * is printed once per trial. {@code -p compressAbove=<bytes>} wraps the serializer in
+ * {@link CompressingSerializerTemplate} ({@code demo.compression.threshold}); -1 leaves it unwrapped.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"json", "jdk-base64", "jdk-hex", "jdk-iso-8859-1", "binary"})
+    public String serializer;
+
+    @Param({"small", "large"})
+    public String session;
+
+    @Param({"-1"})
+    public int compressAbove;
+
+    private SaSerializerTemplate template;
+    private SaSession value;
+    private String payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SaManager.setSaJsonTemplate(new SaJsonTemplateForJackson());
+        template = create(serializer);
+        if (compressAbove >= 0) {
+            template = new CompressingSerializerTemplate(template, compressAbove, 1);
+        }
+        value = SessionFixtures.of(session);
+        payload = template.objectToString(value);
+        System.out.println();
+        System.out.println("payload bytes (" + serializer + ", " + session
+                + (compressAbove >= 0 ? ", compressed" : "") + "): " + payload.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return template.objectToString(value);
+    }
+
+    @Benchmark
+    public SaSession deserialize() {
+        return template.stringToObject(payload, SaSession.class);
+    }
+
+    static SaSerializerTemplate create(String mode) {
+        switch (mode) {
+            case "jdk-base64":
+                return new SaSerializerTemplateForJdkUseBase64();
+            case "jdk-hex":
+                return new SaSerializerTemplateForJdkUseHex();
+            case "jdk-iso-8859-1":
+                return new SaSerializerTemplateForJdkUseISO_8859_1();
+            case "binary":
+                return new SaSerializerTemplateForBinary();
+            default:
+                return new SaSerializerTemplateForJson();
+        }
+    }
+}
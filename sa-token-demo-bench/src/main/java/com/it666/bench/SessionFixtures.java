@@ -0,0 +1,65 @@
+package com.it666.bench;
+
+import cn.dev33.satoken.session.SaSession;
+import cn.dev33.satoken.session.SaTerminalInfo;
+import com.it666.session.entity.UserInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Realistic SaSession shapes shared by the benchmarks.
+ */
+public final class SessionFixtures {
+
+    private SessionFixtures() {
+    }
+
+    /**
+     * The account session written by {@code RedisDemoController.login()}.
+     */
+    public static SaSession small() {
+        SaSession session = new SaSession("satoken:login:session:10001");
+        session.setType("Account-Session");
+        session.setLoginType("login");
+        session.setLoginId("10001");
+        session.getDataMap().put("createdAt", "2026-10-14T23:29:55.858531753Z");
+        session.getDataMap().put("nickname", "user-10001");
+        session.getDataMap().put("lastLoginNode", "node-a");
+        session.getDataMap().put("lastLoginAt", "2026-10-14T23:29:55.889033991Z");
+        session.setHistoryTerminalCount(1);
+        session.getTerminalList().add(new SaTerminalInfo(1, "8d7334ff-cc54-4a3c-80f5-d5235c261471", "DEF", null));
+        return session;
+    }
+
+    /**
+     * The small session plus 50 string attributes, a nested {@link UserInfo},
+     * a 20-entry permission list and a counter.
+     */
+    public static SaSession large() {
+        SaSession session = small();
+        for (int i = 0; i < 50; i++) {
+            session.getDataMap().put("attr-" + i, "value-" + i + "-" + UUID.nameUUIDFromBytes(("attr-" + i).getBytes()));
+        }
+        session.getDataMap().put("userInfo", UserInfo.builder()
+                .userId(10001L)
+                .username("user_10001")
+                .nickname("用户10001")
+                .email("user10001@example.com")
+                .phone("13800138000")
+                .role("admin")
+                .build());
+        List<String> permissions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            permissions.add("perm:" + i);
+        }
+        session.getDataMap().put("permissionList", permissions);
+        session.getDataMap().put("loginCount", 42L);
+        return session;
+    }
+
+    public static SaSession of(String shape) {
+        return "large".equals(shape) ? large() : small();
+    }
+}
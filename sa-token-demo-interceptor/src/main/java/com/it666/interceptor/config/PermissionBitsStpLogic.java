@@ -0,0 +1,81 @@
+package com.it666.interceptor.config;
+
+import cn.dev33.satoken.error.SaErrorCode;
+import cn.dev33.satoken.exception.NotPermissionException;
+import cn.dev33.satoken.stp.StpLogic;
+import cn.dev33.satoken.stp.StpUtil;
+import com.it666.interceptor.permission.PermissionBits;
+import com.it666.interceptor.permission.PermissionRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按权限位图校验的 StpLogic
+ * <p>
+ * 默认的 StpLogic 每次权限校验都在权限码列表里逐个比较字符串（找不到时还要逐个做通配符匹配）。
+ * 这里改用 {@link PermissionRegistry} 编码的位图：checkPermission 是一次位测试，
+ * checkPermissionAnd / checkPermissionOr 是一次掩码运算。账号的权限码含通配符时没有位图，退回默认实现。
+ * <p>
+ * 注册为 Spring Bean 后由 Sa-Token 自动替换 StpUtil 的 StpLogic，拦截器和注解鉴权都会走这里。
+ *
+ * @author 程序员NEO
+ */
+@Component
+public class PermissionBitsStpLogic extends StpLogic {
+
+    private final StpInterfaceImpl stpInterface;
+    private final PermissionRegistry permissionRegistry;
+
+    public PermissionBitsStpLogic(StpInterfaceImpl stpInterface, PermissionRegistry permissionRegistry) {
+        super(StpUtil.TYPE);
+        this.stpInterface = stpInterface;
+        this.permissionRegistry = permissionRegistry;
+    }
+
+    @Override
+    public boolean hasPermission(Object loginId, String permission) {
+        long[] bits = stpInterface.getPermissionBits(loginId, loginType);
+        if (bits == null) {
+            return super.hasPermission(loginId, permission);
+        }
+        return PermissionBits.has(bits, permissionRegistry.indexOf(permission));
+    }
+
+    @Override
+    public void checkPermissionAnd(String... permissionArray) {
+        Object loginId = getLoginId();
+        if (permissionArray == null || permissionArray.length == 0) {
+            return;
+        }
+        long[] bits = stpInterface.getPermissionBits(loginId, loginType);
+        if (bits == null) {
+            super.checkPermissionAnd(permissionArray);
+            return;
+        }
+        if (permissionRegistry.containsAll(permissionArray)
+                && PermissionBits.containsAll(bits, permissionRegistry.mask(permissionArray))) {
+            return;
+        }
+        // 未通过时找出第一个缺少的权限码，异常信息与默认实现一致
+        for (String permission : permissionArray) {
+            if (!PermissionBits.has(bits, permissionRegistry.indexOf(permission))) {
+                throw new NotPermissionException(permission, loginType).setCode(SaErrorCode.CODE_11051);
+            }
+        }
+    }
+
+    @Override
+    public void checkPermissionOr(String... permissionArray) {
+        Object loginId = getLoginId();
+        if (permissionArray == null || permissionArray.length == 0) {
+            return;
+        }
+        long[] bits = stpInterface.getPermissionBits(loginId, loginType);
+        if (bits == null) {
+            super.checkPermissionOr(permissionArray);
+            return;
+        }
+        if (!PermissionBits.intersects(bits, permissionRegistry.mask(permissionArray))) {
+            throw new NotPermissionException(permissionArray[0], loginType).setCode(SaErrorCode.CODE_11051);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.it666.interceptor.config;
 
+import cn.dev33.satoken.context.SaHolder;
 import cn.dev33.satoken.interceptor.SaInterceptor;
-import cn.dev33.satoken.router.SaRouter;
 import cn.dev33.satoken.stp.StpUtil;
+import com.it666.interceptor.router.RouteDecisionCache;
+import com.it666.interceptor.router.RouteRuleMetrics;
+import com.it666.interceptor.router.RouteRuleTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Configuration;
@@ -19,6 +22,9 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  * 4. 角色校验 (checkRoleOr)
  * 5. 权限校验 (checkPermission)
  * 6. 连缀写法
+ * <p>
+ * 规则写法与 SaRouter 的连缀写法一一对应，但在启动时编译成 {@link RouteRuleTable}，
+ * 每个请求只沿路径走一遍前缀树，不再逐条做 Ant 路径匹配。
  *
  * @author 程序员NEO
  */
@@ -27,42 +33,51 @@ public class SaTokenConfigure implements WebMvcConfigurer {
 
     private static final Logger logger = LoggerFactory.getLogger(SaTokenConfigure.class);
 
-    @Override
-    public void addInterceptors(InterceptorRegistry registry) {
-        // 注册 Sa-Token 拦断器，定义详细认证规则
-        registry.addInterceptor(new SaInterceptor(handler -> {
-            // ========== 1. 基础登录校验 ==========
-            SaRouter
-                    .match("/**")              // 拦截的 path 列表，可以写多个
-                    .notMatch(                // 排除掉的 path 列表，可以写多个
-                            "/auth/doLogin",
-                            "/auth/register",
-                            "/favicon.ico",
-                            "/error"
-                    )
-                    .check(r -> StpUtil.checkLogin());  // 要执行的校验动作，可以写完整的 lambda 表达式
+    /**
+     * 路由鉴权规则，按声明顺序执行
+     */
+    private final RouteRuleTable routeRules;
 
-            // ========== 2. 角色校验 - 根据路由划分模块，不同模块需要不同角色 ==========
-            // 开头的路由，必须具备 admin 角色或者 super-admin 角色才可以通过认证
-            SaRouter.match("/admin/**", r -> StpUtil.checkRoleOr("admin", "super-admin"));
+    public SaTokenConfigure(RouteDecisionCache decisionCache, RouteRuleMetrics metrics) {
+        this.routeRules = RouteRuleTable.builder()
+                // 角色、权限校验（cacheDecision）的结论按账号缓存，登录、退出登录时失效
+                .decisionCache(decisionCache)
+                // 每条规则的命中、校验、拒绝次数和耗时，见 GET /admin/route-rules
+                .metrics(metrics)
 
-            // ========== 3. 权限校验 - 不同模块校验不同权限 ==========
-            SaRouter.match("/user/**", r -> StpUtil.checkPermission("user"));
-            SaRouter.match("/admin/**", r -> StpUtil.checkPermission("admin"));
-            SaRouter.match("/goods/**", r -> StpUtil.checkPermission("goods"));
-            SaRouter.match("/orders/**", r -> StpUtil.checkPermission("orders"));
-            SaRouter.match("/notice/**", r -> StpUtil.checkPermission("notice"));
-            SaRouter.match("/comment/**", r -> StpUtil.checkPermission("comment"));
+                // ========== 1. 基础登录校验 ==========
+                .rule("login")
+                .match("/**")                     // 拦截的 path 列表，可以写多个
+                .notMatch(                        // 排除掉的 path 列表，可以写多个
+                        "/auth/doLogin",
+                        "/auth/register",
+                        "/favicon.ico",
+                        "/error"
+                )
+                .check(StpUtil::checkLogin)       // 要执行的校验动作
 
-            // ========== 4. 自定义逻辑 - 连缀写法演示 ==========
-            // 方式一：使用 lambda 表达式
-            SaRouter.match("/**", r -> logger.debug("Sa-Token 访问日志"));
+                // ========== 2. 角色校验 - 根据路由划分模块，不同模块需要不同角色 ==========
+                // 开头的路由，必须具备 admin 角色或者 super-admin 角色才可以通过认证
+                .rule("admin-role").match("/admin/**").cacheDecision().check(() -> StpUtil.checkRoleOr("admin", "super-admin"))
 
-            // 方式二：连缀写法 (推荐)
-            SaRouter
-                    .match("/**")
-                    .check(r -> logger.debug("Sa-Token 连缀写法演示"));
+                // ========== 3. 权限校验 - 不同模块校验不同权限 ==========
+                .rule("user-permission").match("/user/**").cacheDecision().check(() -> StpUtil.checkPermission("user"))
+                .rule("admin-permission").match("/admin/**").cacheDecision().check(() -> StpUtil.checkPermission("admin"))
+                .rule("goods-permission").match("/goods/**").cacheDecision().check(() -> StpUtil.checkPermission("goods"))
+                .rule("orders-permission").match("/orders/**").cacheDecision().check(() -> StpUtil.checkPermission("orders"))
+                .rule("notice-permission").match("/notice/**").cacheDecision().check(() -> StpUtil.checkPermission("notice"))
+                .rule("comment-permission").match("/comment/**").cacheDecision().check(() -> StpUtil.checkPermission("comment"))
 
-        })).addPathPatterns("/**");
+                // ========== 4. 自定义逻辑 ==========
+                .rule("access-log").match("/**").check(() -> logger.debug("Sa-Token 访问日志"))
+                .build();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 注册 Sa-Token 拦断器，每个请求执行一次规则表
+        registry.addInterceptor(new SaInterceptor(handler ->
+                routeRules.run(SaHolder.getRequest().getRequestPath())
+        )).addPathPatterns("/**");
     }
 }
@@ -1,6 +1,9 @@
 package com.it666.interceptor.config;
 
+import cn.dev33.satoken.session.SaSession;
 import cn.dev33.satoken.stp.StpInterface;
+import cn.dev33.satoken.stp.StpUtil;
+import com.it666.interceptor.permission.PermissionRegistry;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
@@ -12,12 +15,30 @@ import java.util.List;
  * <p>
  * 此类用于返回指定用户的角色和权限列表
  * Sa-Token 会在进行角色和权限校验时调用此接口
+ * <p>
+ * 同一请求内的多次校验共用一次读取结果，见 {@link AuthorizationContext}
  *
  * @author 程序员NEO
  */
 @Component
 public class StpInterfaceImpl implements StpInterface {
 
+    /**
+     * Session 中的权限位图，登录时写入
+     */
+    public static final String PERMISSION_BITS_KEY = "permissionBits";
+
+    /**
+     * 编码权限位图的注册表 id
+     */
+    public static final String PERMISSION_REGISTRY_KEY = "permissionRegistry";
+
+    private final PermissionRegistry permissionRegistry;
+
+    public StpInterfaceImpl(PermissionRegistry permissionRegistry) {
+        this.permissionRegistry = permissionRegistry;
+    }
+
     /**
      * 返回指定 loginId 拥有的权限码集合
      *
@@ -27,17 +48,7 @@ public class StpInterfaceImpl implements StpInterface {
      */
     @Override
     public List<String> getPermissionList(Object loginId, String loginType) {
-        // 从 Session 中获取权限列表
-        // 注意：这里需要从 Sa-Token 的 Session 中获取，因为我们在登录时已经将权限存入 Session
-        String[] permissions = (String[]) cn.dev33.satoken.stp.StpUtil
-                .getSessionByLoginId(loginId)
-                .get("permissions");
-
-        if (permissions == null) {
-            return new ArrayList<>();
-        }
-
-        return Arrays.asList(permissions);
+        return AuthorizationContext.get(loginId, loginType, () -> load(loginId)).getPermissions();
     }
 
     /**
@@ -49,17 +60,49 @@ public class StpInterfaceImpl implements StpInterface {
      */
     @Override
     public List<String> getRoleList(Object loginId, String loginType) {
-        // 从 Session 中获取角色
-        String role = (String) cn.dev33.satoken.stp.StpUtil
-                .getSessionByLoginId(loginId)
-                .get("role");
+        return AuthorizationContext.get(loginId, loginType, () -> load(loginId)).getRoles();
+    }
 
-        if (role == null) {
-            return new ArrayList<>();
-        }
+    /**
+     * 返回指定 loginId 的权限位图，供 {@link PermissionBitsStpLogic} 做位运算校验
+     *
+     * @param loginId 账号id
+     * @param loginType 账号类型
+     * @return 权限位图，权限码含通配符时返回 null，需要按字符串匹配
+     */
+    public long[] getPermissionBits(Object loginId, String loginType) {
+        return AuthorizationContext.get(loginId, loginType, () -> load(loginId)).getPermissionBits();
+    }
+
+    /**
+     * 从 Session 中读取角色和权限，每个请求只读取一次
+     */
+    private AuthorizationContext load(Object loginId) {
+        // 注意：这里需要从 Sa-Token 的 Session 中获取，因为我们在登录时已经将角色和权限存入 Session
+        SaSession session = StpUtil.getSessionByLoginId(loginId);
+        String role = (String) session.get("role");
+        String[] permissions = (String[]) session.get("permissions");
 
         List<String> roles = new ArrayList<>();
-        roles.add(role);
-        return roles;
+        if (role != null) {
+            roles.add(role);
+        }
+        if (permissions == null) {
+            return new AuthorizationContext(roles, new ArrayList<>(), new long[0]);
+        }
+        return new AuthorizationContext(roles, Arrays.asList(permissions), permissionBits(session, permissions));
+    }
+
+    /**
+     * 登录时存入 Session 的位图；没有存或者不是本进程编码的（如服务重启后），按权限码重新编码
+     */
+    private long[] permissionBits(SaSession session, String[] permissions) {
+        if (permissionRegistry.getId().equals(session.get(PERMISSION_REGISTRY_KEY))) {
+            long[] bits = (long[]) session.get(PERMISSION_BITS_KEY);
+            if (bits != null) {
+                return bits;
+            }
+        }
+        return permissionRegistry.encode(permissions);
     }
 }
@@ -2,6 +2,8 @@ package com.it666.interceptor.controller;
 
 import cn.dev33.satoken.stp.StpUtil;
 import cn.dev33.satoken.util.SaResult;
+import com.it666.interceptor.router.RouteDecisionCache;
+import com.it666.interceptor.router.RouteRuleMetrics;
 import org.springframework.web.bind.annotation.*;
 
 /**
@@ -17,6 +19,14 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/admin")
 public class AdminController {
 
+    private final RouteRuleMetrics routeRuleMetrics;
+    private final RouteDecisionCache decisionCache;
+
+    public AdminController(RouteRuleMetrics routeRuleMetrics, RouteDecisionCache decisionCache) {
+        this.routeRuleMetrics = routeRuleMetrics;
+        this.decisionCache = decisionCache;
+    }
+
     /**
      * 管理员首页
      * <p>
@@ -79,4 +89,21 @@ public class AdminController {
         return SaResult.ok("获取用户管理数据成功")
                 .set("operator", StpUtil.getLoginId());
     }
+
+    /**
+     * 路由规则统计
+     * <p>
+     * 需要 admin 或 super-admin 角色
+     * 需要 admin 权限
+     * <p>
+     * 每条规则的命中次数、校验次数、决策缓存命中次数、按异常类型的拒绝次数和耗时分布，以及决策缓存的状态
+     *
+     * @return 路由规则统计
+     */
+    @GetMapping("/route-rules")
+    public SaResult routeRules() {
+        return SaResult.ok("获取路由规则统计成功")
+                .set("routeRules", routeRuleMetrics.snapshot())
+                .set("decisionCache", decisionCache.stats());
+    }
 }
@@ -2,6 +2,9 @@ package com.it666.interceptor.controller;
 
 import cn.dev33.satoken.stp.StpUtil;
 import cn.dev33.satoken.util.SaResult;
+import com.it666.interceptor.config.StpInterfaceImpl;
+import com.it666.interceptor.permission.PermissionRegistry;
+import com.it666.interceptor.router.RouteDecisionCache;
 import lombok.Data;
 import org.springframework.web.bind.annotation.*;
 
@@ -62,6 +65,14 @@ public class AuthController {
         USER_DB.put("goods-admin", goodsAdmin);
     }
 
+    private final PermissionRegistry permissionRegistry;
+    private final RouteDecisionCache decisionCache;
+
+    public AuthController(PermissionRegistry permissionRegistry, RouteDecisionCache decisionCache) {
+        this.permissionRegistry = permissionRegistry;
+        this.decisionCache = decisionCache;
+    }
+
     /**
      * 用户登录接口
      * <p>
@@ -89,6 +100,14 @@ public class AuthController {
         // 3. 将用户信息（角色、权限）存入 Session，供后续鉴权使用
         StpUtil.getSession().set("role", userInfo.getRole());
         StpUtil.getSession().set("permissions", userInfo.getPermissions());
+        // 权限位图，供 PermissionBitsStpLogic 按位校验（权限码含通配符时不存，按字符串匹配）
+        long[] permissionBits = permissionRegistry.encode(userInfo.getPermissions());
+        if (permissionBits != null) {
+            StpUtil.getSession().set(StpInterfaceImpl.PERMISSION_BITS_KEY, permissionBits);
+            StpUtil.getSession().set(StpInterfaceImpl.PERMISSION_REGISTRY_KEY, permissionRegistry.getId());
+        }
+        // 角色、权限已改写，之前缓存的鉴权结论作废
+        decisionCache.invalidate(userInfo.getUsername());
 
         // 4. 返回 token
         String token = StpUtil.getTokenValue();
@@ -151,7 +170,11 @@ public class AuthController {
      */
     @PostMapping("/logout")
     public SaResult logout() {
+        Object loginId = StpUtil.getLoginIdDefaultNull();
         StpUtil.logout();
+        if (loginId != null) {
+            decisionCache.invalidate(loginId);
+        }
         return SaResult.ok("退出登录成功");
     }
 
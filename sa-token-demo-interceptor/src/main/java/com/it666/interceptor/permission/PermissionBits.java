@@ -0,0 +1,66 @@
+package com.it666.interceptor.permission;
+
+import java.util.Arrays;
+
+/**
+ * 权限位图运算
+ * <p>
+ * 位图是按 {@link PermissionRegistry} 位序号排列的 {@code long[]}，第 i 个权限码对应
+ * {@code bits[i / 64]} 的第 {@code i % 64} 位，数组长度按需增长，缺少的高位视为 0。
+ *
+ * @author 程序员NEO
+ */
+public final class PermissionBits {
+
+    private PermissionBits() {
+    }
+
+    /**
+     * 置位，数组不够长时返回扩容后的新数组
+     */
+    public static long[] set(long[] bits, int index) {
+        int word = index >>> 6;
+        if (word >= bits.length) {
+            bits = Arrays.copyOf(bits, word + 1);
+        }
+        bits[word] |= 1L << index;
+        return bits;
+    }
+
+    /**
+     * 是否具有第 {@code index} 个权限，{@code index} 为负数时返回 false
+     */
+    public static boolean has(long[] bits, int index) {
+        if (index < 0) {
+            return false;
+        }
+        int word = index >>> 6;
+        return word < bits.length && (bits[word] & (1L << index)) != 0;
+    }
+
+    /**
+     * {@code mask} 中的权限是否全部具有（AND）
+     */
+    public static boolean containsAll(long[] bits, long[] mask) {
+        for (int i = 0; i < mask.length; i++) {
+            long word = i < bits.length ? bits[i] : 0L;
+            if ((mask[i] & ~word) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@code mask} 中的权限是否具有其一（OR）
+     */
+    public static boolean intersects(long[] bits, long[] mask) {
+        int length = Math.min(bits.length, mask.length);
+        for (int i = 0; i < length; i++) {
+            if ((bits[i] & mask[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+package com.it666.interceptor.permission;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 权限码注册表
+ * <p>
+ * 每个权限码第一次出现时分配一个位序号，账号的权限集合就可以存成一个位图（{@code long[]}），
+ * 单个权限校验变成一次位测试，AND / OR 校验变成掩码运算，不再逐个比较字符串。
+ * <p>
+ * 位序号只在当前进程内有效：存入 Session 的位图要和 {@link #getId()} 一起保存，
+ * 读取时注册表 id 不一致（如服务重启后）就要用权限码重新编码。
+ * 含通配符 {@code *} 的权限码不能用位图表示，由调用方退回字符串匹配。
+ *
+ * @author 程序员NEO
+ */
+@Component
+public class PermissionRegistry {
+
+    private final String id = UUID.randomUUID().toString();
+    private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * 本注册表实例的 id，用于判断 Session 中的位图是否由本进程编码
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 已注册的权限码个数
+     */
+    public int size() {
+        return next.get();
+    }
+
+    /**
+     * 权限码的位序号，没有则分配一个
+     */
+    public int intern(String code) {
+        Integer index = indexes.get(code);
+        return index != null ? index : indexes.computeIfAbsent(code, c -> next.getAndIncrement());
+    }
+
+    /**
+     * 权限码的位序号，从未注册过返回 -1（任何账号都不具有该权限）
+     */
+    public int indexOf(String code) {
+        Integer index = indexes.get(code);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * 把账号的权限码编码成位图，新出现的权限码会被注册
+     *
+     * @return 位图，权限码含通配符时返回 null
+     */
+    public long[] encode(String... codes) {
+        for (String code : codes) {
+            if (isWildcard(code)) {
+                return null;
+            }
+        }
+        long[] bits = new long[0];
+        for (String code : codes) {
+            bits = PermissionBits.set(bits, intern(code));
+        }
+        return bits;
+    }
+
+    /**
+     * 一组待校验权限码的掩码，未注册的权限码被忽略；全部未注册时返回空掩码
+     */
+    public long[] mask(String... codes) {
+        int[] indexes = new int[codes.length];
+        int max = -1;
+        for (int i = 0; i < codes.length; i++) {
+            indexes[i] = indexOf(codes[i]);
+            max = Math.max(max, indexes[i]);
+        }
+        long[] mask = new long[max < 0 ? 0 : (max >>> 6) + 1];
+        for (int index : indexes) {
+            if (index >= 0) {
+                mask[index >>> 6] |= 1L << index;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 是否全部权限码都已注册；有未注册的权限码时，AND 校验必定不通过
+     */
+    public boolean containsAll(String... codes) {
+        for (String code : codes) {
+            if (!indexes.containsKey(code)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWildcard(String code) {
+        return code.indexOf('*') >= 0;
+    }
+}
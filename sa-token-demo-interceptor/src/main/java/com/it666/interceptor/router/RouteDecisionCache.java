@@ -0,0 +1,240 @@
+package com.it666.interceptor.router;
+
+import cn.dev33.satoken.exception.NotPermissionException;
+import cn.dev33.satoken.exception.NotRoleException;
+import cn.dev33.satoken.exception.SaTokenException;
+import cn.dev33.satoken.stp.StpUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 跨请求的路由鉴权决策缓存
+ * <p>
+ * 同一个账号反复访问 {@code /goods/**}、{@code /orders/**} 时，角色和权限校验每次得出的结论都一样。
+ * 标记了 {@code cacheDecision()} 的规则，按（loginId, 规则 id）缓存通过或拒绝的结论，
+ * 命中时不再走 StpInterface；拒绝时按缓存的角色 / 权限码新建 NotRoleException / NotPermissionException 抛出，
+ * 不同请求之间不共享异常实例。
+ * <p>
+ * 账号的角色和权限被改写（登录）或退出登录时调用 {@link #invalidate(Object)}，丢弃该账号的全部结论；
+ * 失效前已开始、失效后才得出的结论不会写入。条目数有上限（{@code demo.decision-cache.max-entries}），
+ * 并有存活时间（{@code demo.decision-cache.ttl}），不经过登录接口的权限变更最迟在存活时间后生效。
+ * 账号的登记只在它还有结论时保留，所以账号数同样不超过条目上限。
+ *
+ * @author 程序员NEO
+ */
+@Component
+public class RouteDecisionCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    /**
+     * 全部结论，key 为 {@code loginId + '\n' + 规则 id}，按访问顺序 LRU 淘汰
+     */
+    private final LinkedHashMap<String, Decision> decisions;
+
+    /**
+     * 还有结论的账号，与 {@link #decisions} 使用同一把锁
+     */
+    private final Map<String, Account> accounts = new HashMap<>();
+
+    /**
+     * 失效次数，没有登记的账号用它判断校验期间是否发生过失效
+     */
+    private long invalidationSeq;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public RouteDecisionCache(@Value("${demo.decision-cache.max-entries:10000}") int maxEntries,
+                              @Value("${demo.decision-cache.ttl:5m}") Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.decisions = new LinkedHashMap<String, Decision>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Decision> eldest) {
+                if (size() > RouteDecisionCache.this.maxEntries) {
+                    evictions.increment();
+                    release(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 执行 {@code rule} 的校验，当前账号有缓存的结论时直接采用；未登录时照常执行校验
+     */
+    public void check(RouteRule rule) {
+        Object loginId = StpUtil.getLoginIdDefaultNull();
+        if (loginId == null) {
+            rule.getCheck().run();
+            return;
+        }
+        String account = String.valueOf(loginId);
+        String key = account + '\n' + rule.getId();
+
+        Account owner;
+        long seq;
+        Decision decision;
+        synchronized (decisions) {
+            decision = decisions.get(key);
+            if (decision != null && decision.expiresAt <= System.currentTimeMillis()) {
+                decisions.remove(key);
+                release(decision);
+                decision = null;
+            }
+            owner = accounts.get(account);
+            seq = invalidationSeq;
+        }
+        if (decision != null) {
+            hits.increment();
+            if (decision.denial != null) {
+                throw decision.denial.newException();
+            }
+            return;
+        }
+        misses.increment();
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        try {
+            rule.getCheck().run();
+        } catch (NotRoleException e) {
+            put(account, rule.getId(), owner, seq, new Denial(true, e.getRole(), e.getLoginType(), e.getCode()), expiresAt);
+            throw e;
+        } catch (NotPermissionException e) {
+            put(account, rule.getId(), owner, seq, new Denial(false, e.getPermission(), e.getLoginType(), e.getCode()), expiresAt);
+            throw e;
+        }
+        put(account, rule.getId(), owner, seq, null, expiresAt);
+    }
+
+    /**
+     * 账号的角色或权限变了，丢弃它之前的全部结论
+     */
+    public void invalidate(Object loginId) {
+        synchronized (decisions) {
+            Account owner = accounts.remove(String.valueOf(loginId));
+            if (owner != null) {
+                for (String ruleId : owner.ruleIds) {
+                    decisions.remove(owner.name + '\n' + ruleId);
+                }
+            }
+            invalidationSeq++;
+        }
+        invalidations.increment();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (decisions) {
+            stats.put("entries", decisions.size());
+            stats.put("accounts", accounts.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    /**
+     * 写入校验结论。校验开始时登记的账号（{@code owner}）已被失效或回收，
+     * 或者账号当时没有登记而期间发生过失效，说明结论可能是按旧权限得出的，不写入
+     */
+    private void put(String account, String ruleId, Account owner, long seq, Denial denial, long expiresAt) {
+        synchronized (decisions) {
+            Account current = accounts.get(account);
+            if (owner != null ? current != owner : seq != invalidationSeq) {
+                return;
+            }
+            if (current == null) {
+                current = new Account(account);
+                accounts.put(account, current);
+            }
+            current.ruleIds.add(ruleId);
+            decisions.put(account + '\n' + ruleId, new Decision(current, ruleId, denial, expiresAt));
+        }
+    }
+
+    /**
+     * 结论被淘汰或过期后，从所属账号中注销；账号没有结论了就不再登记，调用方持有 decisions 锁
+     */
+    private void release(Decision decision) {
+        Account owner = decision.owner;
+        owner.ruleIds.remove(decision.ruleId);
+        if (owner.ruleIds.isEmpty() && accounts.get(owner.name) == owner) {
+            accounts.remove(owner.name);
+        }
+    }
+
+    private static final class Account {
+
+        final String name;
+
+        /**
+         * 该账号有结论的规则 id
+         */
+        final Set<String> ruleIds = new HashSet<>();
+
+        Account(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Decision {
+
+        final Account owner;
+        final String ruleId;
+
+        /**
+         * 拒绝时的异常信息，通过时为 null
+         */
+        final Denial denial;
+        final long expiresAt;
+
+        Decision(Account owner, String ruleId, Denial denial, long expiresAt) {
+            this.owner = owner;
+            this.ruleId = ruleId;
+            this.denial = denial;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 拒绝结论：缺少的角色或权限码、账号类型和错误码，每次命中新建异常
+     */
+    private static final class Denial {
+
+        final boolean role;
+        final String element;
+        final String loginType;
+        final int code;
+
+        Denial(boolean role, String element, String loginType, int code) {
+            this.role = role;
+            this.element = element;
+            this.loginType = loginType;
+            this.code = code;
+        }
+
+        SaTokenException newException() {
+            if (role) {
+                return new NotRoleException(element, loginType).setCode(code);
+            }
+            return new NotPermissionException(element, loginType).setCode(code);
+        }
+    }
+}
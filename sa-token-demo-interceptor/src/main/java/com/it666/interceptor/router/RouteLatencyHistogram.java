@@ -0,0 +1,87 @@
+package com.it666.interceptor.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的耗时直方图，按 2 的幂分桶（纳秒）
+ * <p>
+ * 第 i 个桶记录 {@code [2^(i-1), 2^i)} 纳秒的样本，百分位取所在桶的上界，误差在 2 倍以内，
+ * 足够区分“几百纳秒”“几微秒”“几毫秒”这样的量级。从启动开始累计，不按时间窗口滚动。
+ *
+ * @author 程序员NEO
+ */
+public final class RouteLatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public RouteLatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        counts[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+        max.accumulate(nanos);
+    }
+
+    /**
+     * 样本数、p50 / p90 / p99 / 最大值（微秒），以及非空桶的分布（key 为桶上界纳秒）
+     */
+    public Map<String, Object> snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        long maxNanos = max.get();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", total);
+        result.put("p50Micros", micros(Math.min(maxNanos, percentile(snapshot, total, 0.50))));
+        result.put("p90Micros", micros(Math.min(maxNanos, percentile(snapshot, total, 0.90))));
+        result.put("p99Micros", micros(Math.min(maxNanos, percentile(snapshot, total, 0.99))));
+        result.put("maxMicros", micros(maxNanos));
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (snapshot[i] > 0) {
+                buckets.put("<" + upperBound(i), snapshot[i]);
+            }
+        }
+        result.put("bucketsNanos", buckets);
+        return result;
+    }
+
+    private static long percentile(long[] snapshot, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket >= 63 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    private static double micros(long nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+}
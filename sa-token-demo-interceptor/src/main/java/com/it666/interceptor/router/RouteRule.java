@@ -0,0 +1,75 @@
+package com.it666.interceptor.router;
+
+import cn.dev33.satoken.fun.SaFunction;
+import cn.dev33.satoken.router.SaRouter;
+
+/**
+ * 一条路由鉴权规则，相当于一句 {@code SaRouter.match(...).notMatch(...).check(...)}
+ * <p>
+ * 命中条件与 SaRouter 相同：请求路径匹配任意一个 match 路径，且不匹配任何一个 notMatch 路径。
+ *
+ * @author 程序员NEO
+ */
+public final class RouteRule {
+
+    private final String id;
+    private final int order;
+    private final String[] match;
+    private final String[] notMatch;
+    private final SaFunction check;
+    private final boolean cacheDecision;
+
+    RouteRule(String id, int order, String[] match, String[] notMatch, SaFunction check, boolean cacheDecision) {
+        this.id = id;
+        this.order = order;
+        this.match = match;
+        this.notMatch = notMatch;
+        this.check = check;
+        this.cacheDecision = cacheDecision;
+    }
+
+    /**
+     * 规则 id，在同一张规则表内唯一
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 声明顺序，从 0 开始，命中的规则按此顺序执行
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    public String[] getMatch() {
+        return match.clone();
+    }
+
+    public String[] getNotMatch() {
+        return notMatch.clone();
+    }
+
+    public SaFunction getCheck() {
+        return check;
+    }
+
+    /**
+     * 校验结果是否可以按账号缓存，见 {@link RouteDecisionCache}
+     */
+    public boolean isCacheDecision() {
+        return cacheDecision;
+    }
+
+    /**
+     * 逐个路径模式判断是否命中，即 SaRouter 链式写法的判断方式
+     */
+    public boolean isMatch(String path) {
+        return SaRouter.isMatch(match, path) && !SaRouter.isMatch(notMatch, path);
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
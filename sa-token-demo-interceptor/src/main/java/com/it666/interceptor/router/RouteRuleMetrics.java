@@ -0,0 +1,65 @@
+package com.it666.interceptor.router;
+
+import cn.dev33.satoken.exception.BackResultException;
+import cn.dev33.satoken.exception.StopMatchException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 路由规则表的运行统计
+ * <p>
+ * 规则表构建时为每条规则登记一个 {@link RouteRuleStats}，之后 {@link RouteRuleTable#run(String)}
+ * 每个请求记录：前缀树匹配耗时、每条命中规则的校验次数、拒绝次数（按异常类型）和耗时。
+ * 计数都是 LongAdder / 无锁直方图，不会让并发请求互相等待。
+ * <p>
+ * SaRouter.stop() / back() 抛出的 StopMatchException、BackResultException 是流程控制，不计为拒绝。
+ *
+ * @author 程序员NEO
+ */
+@Component
+public class RouteRuleMetrics {
+
+    private final List<RouteRuleStats> rules = new ArrayList<>();
+    private final LongAdder requests = new LongAdder();
+    private final RouteLatencyHistogram matchLatency = new RouteLatencyHistogram();
+
+    /**
+     * 登记一条规则，返回它的统计对象
+     */
+    synchronized RouteRuleStats register(RouteRule rule) {
+        RouteRuleStats stats = new RouteRuleStats(rule);
+        rules.add(stats);
+        return stats;
+    }
+
+    void recordMatch(long nanos) {
+        requests.increment();
+        matchLatency.record(nanos);
+    }
+
+    static boolean isRejection(Throwable e) {
+        return !(e instanceof StopMatchException) && !(e instanceof BackResultException);
+    }
+
+    /**
+     * 全部规则的统计，按声明顺序
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("requests", requests.sum());
+        snapshot.put("matchLatency", matchLatency.snapshot());
+        List<Map<String, Object>> ruleSnapshots = new ArrayList<>();
+        synchronized (this) {
+            for (RouteRuleStats stats : rules) {
+                ruleSnapshots.add(stats.snapshot());
+            }
+        }
+        snapshot.put("rules", ruleSnapshots);
+        return snapshot;
+    }
+}
@@ -0,0 +1,66 @@
+package com.it666.interceptor.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单条路由规则的统计
+ * <ul>
+ *     <li>matches：请求路径命中本规则的次数（前面的规则拒绝后，后面命中的规则不再校验）</li>
+ *     <li>checks：实际执行校验动作的次数</li>
+ *     <li>cachedDecisions：由决策缓存直接给出结论、没有执行校验动作的次数</li>
+ *     <li>rejections：按异常类型统计的拒绝次数（NotLoginException、NotRoleException、NotPermissionException 等）</li>
+ *     <li>latency：本规则从开始校验到得出结论的耗时，含查决策缓存</li>
+ * </ul>
+ *
+ * @author 程序员NEO
+ */
+public final class RouteRuleStats {
+
+    private final RouteRule rule;
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder checks = new LongAdder();
+    private final Map<String, LongAdder> rejections = new ConcurrentHashMap<>();
+    private final RouteLatencyHistogram latency = new RouteLatencyHistogram();
+
+    RouteRuleStats(RouteRule rule) {
+        this.rule = rule;
+    }
+
+    void recordMatch() {
+        matches.increment();
+    }
+
+    void recordCheck() {
+        checks.increment();
+    }
+
+    void recordOutcome(Throwable rejection, long nanos) {
+        evaluations.increment();
+        if (rejection != null) {
+            rejections.computeIfAbsent(rejection.getClass().getSimpleName(), type -> new LongAdder()).increment();
+        }
+        latency.record(nanos);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("id", rule.getId());
+        snapshot.put("match", rule.getMatch());
+        snapshot.put("notMatch", rule.getNotMatch());
+        snapshot.put("cacheDecision", rule.isCacheDecision());
+        snapshot.put("matches", matches.sum());
+        long checked = checks.sum();
+        snapshot.put("checks", checked);
+        snapshot.put("cachedDecisions", Math.max(0, evaluations.sum() - checked));
+        Map<String, Long> rejectionCounts = new TreeMap<>();
+        rejections.forEach((type, count) -> rejectionCounts.put(type, count.sum()));
+        snapshot.put("rejections", rejectionCounts);
+        snapshot.put("latency", latency.snapshot());
+        return snapshot;
+    }
+}
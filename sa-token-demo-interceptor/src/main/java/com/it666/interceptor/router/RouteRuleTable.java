@@ -0,0 +1,390 @@
+package com.it666.interceptor.router;
+
+import cn.dev33.satoken.fun.SaFunction;
+import cn.dev33.satoken.router.SaRouter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的路由规则表
+ * <p>
+ * SaRouter 的链式写法每个请求都要把所有规则的路径模式依次匹配一遍。这里在启动时把全部 match / notMatch
+ * 路径按 {@code /} 分段编进一棵前缀树：
+ * <ul>
+ *     <li>普通分段（如 {@code admin}）按哈希查找子节点</li>
+ *     <li>含通配符的分段（如 {@code *}、{@code {id}}、{@code *.html}）交给路由匹配器单段匹配</li>
+ *     <li>{@code **} 分段是一个可以吃掉任意多段（包括零段）的节点</li>
+ * </ul>
+ * 路径终点节点上记录哪些规则的 match / notMatch 在此结束。请求时沿路径走一遍前缀树，
+ * 得到命中的规则集合，再按声明顺序返回，结果与 SaRouter 逐条匹配完全一致。
+ * <p>
+ * 前缀树只处理规范路径（以 {@code /} 开头、不以 {@code /} 结尾、没有空分段）。
+ * 不规范的路径模式所在的规则每次请求单独匹配；不规范的请求路径（如 {@code /}、{@code /user/}）
+ * 直接逐条匹配全部规则，保证与 AntPathMatcher 的边界行为一致。
+ *
+ * @author 程序员NEO
+ */
+public final class RouteRuleTable {
+
+    private final List<RouteRule> rules;
+    private final Node root;
+    private final RouteDecisionCache decisionCache;
+    private final RouteRuleMetrics metrics;
+
+    /**
+     * 按声明顺序的规则统计，未设置 metrics 时为 null
+     */
+    private final RouteRuleStats[] ruleStats;
+
+    /**
+     * 含不规范路径模式、不进前缀树的规则
+     */
+    private final int[] dynamicRules;
+
+    private RouteRuleTable(List<RouteRule> rules, RouteDecisionCache decisionCache, RouteRuleMetrics metrics) {
+        this.decisionCache = decisionCache;
+        this.metrics = metrics;
+        this.ruleStats = metrics == null ? null : new RouteRuleStats[rules.size()];
+        if (metrics != null) {
+            // 校验动作包一层计数，决策缓存命中时不会执行到这里
+            for (int i = 0; i < rules.size(); i++) {
+                RouteRule rule = rules.get(i);
+                RouteRuleStats stats = metrics.register(rule);
+                SaFunction check = rule.getCheck();
+                ruleStats[i] = stats;
+                rules.set(i, new RouteRule(rule.getId(), rule.getOrder(), rule.getMatch(), rule.getNotMatch(), () -> {
+                    stats.recordCheck();
+                    check.run();
+                }, rule.isCacheDecision()));
+            }
+        }
+        this.rules = Collections.unmodifiableList(rules);
+        this.root = new Node(false);
+        List<Integer> dynamic = new ArrayList<>();
+        for (RouteRule rule : rules) {
+            if (!isNormalized(rule.getMatch()) || !isNormalized(rule.getNotMatch())) {
+                dynamic.add(rule.getOrder());
+                continue;
+            }
+            for (String pattern : rule.getMatch()) {
+                insert(pattern).matchEnds.set(rule.getOrder());
+            }
+            for (String pattern : rule.getNotMatch()) {
+                insert(pattern).notMatchEnds.set(rule.getOrder());
+            }
+        }
+        this.dynamicRules = dynamic.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 全部规则，按声明顺序
+     */
+    public List<RouteRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * 依次执行 {@code path} 命中的规则的校验动作；某条校验抛出异常时，后面的规则不再执行。
+     * 标记了 {@code cacheDecision()} 的规则先查决策缓存
+     */
+    public void run(String path) {
+        if (metrics == null) {
+            for (RouteRule rule : match(path)) {
+                execute(rule);
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<RouteRule> matched = match(path);
+        metrics.recordMatch(System.nanoTime() - start);
+        for (RouteRule rule : matched) {
+            ruleStats[rule.getOrder()].recordMatch();
+        }
+        for (RouteRule rule : matched) {
+            RouteRuleStats stats = ruleStats[rule.getOrder()];
+            long begin = System.nanoTime();
+            try {
+                execute(rule);
+            } catch (RuntimeException e) {
+                stats.recordOutcome(RouteRuleMetrics.isRejection(e) ? e : null, System.nanoTime() - begin);
+                throw e;
+            }
+            stats.recordOutcome(null, System.nanoTime() - begin);
+        }
+    }
+
+    private void execute(RouteRule rule) {
+        if (rule.isCacheDecision() && decisionCache != null) {
+            decisionCache.check(rule);
+        } else {
+            rule.getCheck().run();
+        }
+    }
+
+    /**
+     * {@code path} 命中的规则，按声明顺序
+     */
+    public List<RouteRule> match(String path) {
+        if (!isNormalized(path)) {
+            List<RouteRule> hits = new ArrayList<>();
+            for (RouteRule rule : rules) {
+                if (rule.isMatch(path)) {
+                    hits.add(rule);
+                }
+            }
+            return hits;
+        }
+
+        List<Node> active = new ArrayList<>();
+        enter(root, active);
+        int start = 1;
+        while (start <= path.length() && !active.isEmpty()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            String segment = path.substring(start, end);
+            List<Node> next = new ArrayList<>();
+            for (Node node : active) {
+                if (node.anySegments) {
+                    enter(node, next);
+                }
+                Node literal = node.literals.get(segment);
+                if (literal != null) {
+                    enter(literal, next);
+                }
+                for (Wildcard wildcard : node.wildcards) {
+                    if (SaRouter.isMatch(wildcard.segment, segment)) {
+                        enter(wildcard.node, next);
+                    }
+                }
+            }
+            active = next;
+            start = end + 1;
+        }
+
+        BitSet hits = new BitSet(rules.size());
+        BitSet vetoed = new BitSet(rules.size());
+        for (Node node : active) {
+            hits.or(node.matchEnds);
+            vetoed.or(node.notMatchEnds);
+        }
+        hits.andNot(vetoed);
+        for (int order : dynamicRules) {
+            if (rules.get(order).isMatch(path)) {
+                hits.set(order);
+            }
+        }
+
+        List<RouteRule> matched = new ArrayList<>(hits.cardinality());
+        for (int order = hits.nextSetBit(0); order >= 0; order = hits.nextSetBit(order + 1)) {
+            matched.add(rules.get(order));
+        }
+        return matched;
+    }
+
+    private Node insert(String pattern) {
+        Node node = root;
+        int start = 1;
+        while (start <= pattern.length()) {
+            int end = pattern.indexOf('/', start);
+            if (end < 0) {
+                end = pattern.length();
+            }
+            node = node.child(pattern.substring(start, end));
+            start = end + 1;
+        }
+        return node;
+    }
+
+    /**
+     * 把 {@code node} 以及从它出发不消耗分段就能到达的 {@code **} 节点加入 {@code active}
+     */
+    private static void enter(Node node, List<Node> active) {
+        while (node != null && !active.contains(node)) {
+            active.add(node);
+            node = node.anySegmentsChild;
+        }
+    }
+
+    private static boolean isNormalized(String[] patterns) {
+        for (String pattern : patterns) {
+            if (!isNormalized(pattern)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNormalized(String path) {
+        return path.length() > 1 && path.charAt(0) == '/' && path.charAt(path.length() - 1) != '/'
+                && !path.contains("//");
+    }
+
+    private static boolean isWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0;
+    }
+
+    /**
+     * 前缀树节点
+     */
+    private static final class Node {
+
+        /**
+         * 是否是 {@code **} 节点，可以停留在原地吃掉任意一段
+         */
+        final boolean anySegments;
+        final Map<String, Node> literals = new HashMap<>();
+        final List<Wildcard> wildcards = new ArrayList<>();
+        Node anySegmentsChild;
+        final BitSet matchEnds = new BitSet();
+        final BitSet notMatchEnds = new BitSet();
+
+        Node(boolean anySegments) {
+            this.anySegments = anySegments;
+        }
+
+        Node child(String segment) {
+            if ("**".equals(segment)) {
+                if (anySegmentsChild == null) {
+                    anySegmentsChild = new Node(true);
+                }
+                return anySegmentsChild;
+            }
+            if (!isWildcard(segment)) {
+                return literals.computeIfAbsent(segment, s -> new Node(false));
+            }
+            for (Wildcard wildcard : wildcards) {
+                if (wildcard.segment.equals(segment)) {
+                    return wildcard.node;
+                }
+            }
+            Wildcard wildcard = new Wildcard(segment, new Node(false));
+            wildcards.add(wildcard);
+            return wildcard.node;
+        }
+    }
+
+    private static final class Wildcard {
+
+        final String segment;
+        final Node node;
+
+        Wildcard(String segment, Node node) {
+            this.segment = segment;
+            this.node = node;
+        }
+    }
+
+    /**
+     * 规则表构建器，规则按声明顺序执行
+     */
+    public static final class Builder {
+
+        private final List<RouteRule> rules = new ArrayList<>();
+        private final Set<String> ids = new HashSet<>();
+        private RouteDecisionCache decisionCache;
+        private RouteRuleMetrics metrics;
+
+        private Builder() {
+        }
+
+        /**
+         * 记录每条规则的命中、校验、拒绝次数和耗时，不设置则不统计
+         */
+        public Builder metrics(RouteRuleMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * 标记了 {@code cacheDecision()} 的规则使用的决策缓存，不设置则每次都执行校验
+         */
+        public Builder decisionCache(RouteDecisionCache decisionCache) {
+            this.decisionCache = decisionCache;
+            return this;
+        }
+
+        /**
+         * 开始声明一条规则
+         *
+         * @param id 规则 id，不能重复
+         */
+        public RuleBuilder rule(String id) {
+            if (!ids.add(id)) {
+                throw new IllegalArgumentException("路由规则 id 重复: " + id);
+            }
+            return new RuleBuilder(this, id);
+        }
+
+        public RouteRuleTable build() {
+            return new RouteRuleTable(new ArrayList<>(rules), decisionCache, metrics);
+        }
+    }
+
+    /**
+     * 单条规则的构建器，写法与 {@code SaRouter.match(...).notMatch(...).check(...)} 对应
+     */
+    public static final class RuleBuilder {
+
+        private final Builder table;
+        private final String id;
+        private final List<String> match = new ArrayList<>();
+        private final List<String> notMatch = new ArrayList<>();
+        private boolean cacheDecision;
+
+        private RuleBuilder(Builder table, String id) {
+            this.table = table;
+            this.id = id;
+        }
+
+        /**
+         * 拦截的 path 列表，可以写多个
+         */
+        public RuleBuilder match(String... patterns) {
+            Collections.addAll(match, patterns);
+            return this;
+        }
+
+        /**
+         * 排除掉的 path 列表，可以写多个
+         */
+        public RuleBuilder notMatch(String... patterns) {
+            Collections.addAll(notMatch, patterns);
+            return this;
+        }
+
+        /**
+         * 校验结果只取决于账号的角色和权限（如 checkRole、checkPermission），可以按账号缓存。
+         * 依赖 token、请求参数等的校验（如 checkLogin）不要标记
+         */
+        public RuleBuilder cacheDecision() {
+            this.cacheDecision = true;
+            return this;
+        }
+
+        /**
+         * 要执行的校验动作，结束本条规则的声明
+         */
+        public Builder check(SaFunction check) {
+            if (match.isEmpty()) {
+                throw new IllegalArgumentException("路由规则没有 match 路径: " + id);
+            }
+            table.rules.add(new RouteRule(id, table.rules.size(), match.toArray(new String[0]),
+                    notMatch.toArray(new String[0]), check, cacheDecision));
+            return table;
+        }
+    }
+}
@@ -3,8 +3,10 @@ package com.it666.redis;
 import cn.dev33.satoken.SaManager;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class RedisDemoApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,25 @@
+package com.it666.redis.config;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.TimeoutOptions;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * With {@code demo.resilience.enabled=true}, commands issued while Lettuce is reconnecting fail at
+ * once instead of queueing until {@code spring.redis.timeout}, so the circuit breaker opens quickly.
+ */
+@Configuration
+@ConditionalOnProperty(name = "demo.resilience.enabled", havingValue = "true")
+public class RedisFailFastConfig {
+
+    @Bean
+    public LettuceClientConfigurationBuilderCustomizer failFastClientOptions() {
+        return builder -> builder.clientOptions(ClientOptions.builder()
+                .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                .timeoutOptions(TimeoutOptions.enabled())
+                .build());
+    }
+}
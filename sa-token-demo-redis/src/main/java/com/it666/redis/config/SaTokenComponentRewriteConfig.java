@@ -1,46 +1,512 @@
 package com.it666.redis.config;
 
 import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.dao.SaTokenDao;
 import cn.dev33.satoken.dao.SaTokenDaoDefaultImpl;
+import cn.dev33.satoken.dao.SaTokenDaoForRedisTemplate;
+import cn.dev33.satoken.fun.strategy.SaCreateTokenFunction;
+import cn.dev33.satoken.listener.SaTokenEventCenter;
+import cn.dev33.satoken.serializer.SaSerializerTemplate;
 import cn.dev33.satoken.serializer.impl.SaSerializerTemplateForJdkUseBase64;
 import cn.dev33.satoken.serializer.impl.SaSerializerTemplateForJdkUseHex;
 import cn.dev33.satoken.serializer.impl.SaSerializerTemplateForJdkUseISO_8859_1;
 import cn.dev33.satoken.serializer.impl.SaSerializerTemplateForJson;
+import cn.dev33.satoken.stp.StpUtil;
+import cn.dev33.satoken.strategy.SaStrategy;
+import com.it666.redis.dao.ActiveRefreshCoalescingSaTokenDao;
+import com.it666.redis.dao.CircuitBreaker;
+import com.it666.redis.dao.DelegatingSaTokenDao;
+import com.it666.redis.dao.DirtyTrackingSaSession;
+import com.it666.redis.dao.FieldSaSession;
+import com.it666.redis.dao.LuaWriteBatchFlusher;
+import com.it666.redis.dao.NearCache;
+import com.it666.redis.dao.PendingSessionSaTokenDao;
+import com.it666.redis.dao.PipelinedWriteBatchFlusher;
+import com.it666.redis.dao.RedisInvalidationBus;
+import com.it666.redis.dao.ResilientSaTokenDao;
+import com.it666.redis.dao.SaTokenDaoForRedisHash;
+import com.it666.redis.dao.TieredSaTokenDao;
+import com.it666.redis.dao.WriteBatchFlusher;
+import com.it666.redis.dao.WriteBehindSaTokenDao;
+import com.it666.redis.feed.ChangeFeedListener;
+import com.it666.redis.feed.ChangeFeedSaTokenDao;
+import com.it666.redis.feed.SessionChangeFeed;
+import com.it666.redis.guard.TokenGuardSaTokenDao;
+import com.it666.redis.guard.TokenKeyScanner;
+import com.it666.redis.key.CompactKeyCodec;
+import com.it666.redis.key.SaTokenDaoForCompactKeys;
+import com.it666.redis.lettuce.LettuceAsyncSaTokenDao;
+import com.it666.redis.memory.MemorySnapshotStore;
+import com.it666.redis.memory.StripedMemorySaTokenDao;
+import com.it666.redis.metrics.MeteredSaTokenDao;
+import com.it666.redis.metrics.MeteredSerializerTemplate;
+import com.it666.redis.serializer.CompressingSerializerTemplate;
+import com.it666.redis.serializer.SaSerializerTemplateForBinary;
+import com.it666.redis.shard.ConsistentHashRing;
+import com.it666.redis.shard.RedisShard;
+import com.it666.redis.shard.ShardKeyRouter;
+import com.it666.redis.shard.ShardedSaTokenDao;
+import io.lettuce.core.RedisURI;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.PostConstruct;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
+/**
+ * Runs after all singletons are created: Sa-Token's own bean injection sets the Redis dao on
+ * {@link SaManager} while the context is being populated, so any earlier rewrite would be undone.
+ */
 @Component
-public class SaTokenComponentRewriteConfig {
+public class SaTokenComponentRewriteConfig implements SmartInitializingSingleton, DisposableBean {
+
+    private static final String TOKEN_GUARD_CHANNEL = "satoken:demo:token-guard";
+    private static final String CHANGE_FEED_STREAM = "satoken:demo:changes";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${demo.node-id:${spring.application.name}:${server.port}}")
+    private String nodeId;
 
     @Value("${demo.storage-mode:auto}")
     private String storageMode;
 
+    @Value("${demo.session.dirty-tracking:false}")
+    private boolean dirtyTracking;
+
     @Value("${demo.serializer:json}")
     private String serializerMode;
 
-    @PostConstruct
+    @Value("${demo.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    @Value("${demo.compression.threshold:1024}")
+    private int compressionThreshold;
+
+    @Value("${demo.compression.level:1}")
+    private int compressionLevel;
+
+    @Value("${demo.compact-keys.enabled:false}")
+    private boolean compactKeysEnabled;
+
+    @Value("${demo.compact-keys.legacy-fallback:true}")
+    private boolean compactKeysLegacyFallback;
+
+    @Value("${demo.tiered.max-size:10000}")
+    private int tieredMaxSize;
+
+    @Value("${demo.tiered.ttl:5s}")
+    private Duration tieredTtl;
+
+    @Value("${demo.tiered.channel:" + RedisInvalidationBus.DEFAULT_CHANNEL + "}")
+    private String tieredChannel;
+
+    @Value("${demo.memory.max-entries:1000000}")
+    private long memoryMaxEntries;
+
+    @Value("${demo.memory.stripes:0}")
+    private int memoryStripes;
+
+    @Value("${demo.memory.snapshot.dir:}")
+    private String memorySnapshotDir;
+
+    @Value("${demo.memory.snapshot.interval:5s}")
+    private Duration memorySnapshotInterval;
+
+    @Value("${demo.sharding.nodes:}")
+    private List<String> shardNodes;
+
+    @Value("${demo.sharding.previous-nodes:}")
+    private List<String> previousShardNodes;
+
+    @Value("${demo.sharding.virtual-nodes:160}")
+    private int virtualNodes;
+
+    @Value("${demo.resilience.enabled:false}")
+    private boolean resilienceEnabled;
+
+    @Value("${demo.resilience.failure-threshold:3}")
+    private int resilienceFailureThreshold;
+
+    @Value("${demo.resilience.open-duration:5s}")
+    private Duration resilienceOpenDuration;
+
+    @Value("${demo.resilience.probe-interval:1s}")
+    private Duration resilienceProbeInterval;
+
+    @Value("${demo.resilience.replica-max-entries:100000}")
+    private long resilienceReplicaMaxEntries;
+
+    @Value("${demo.resilience.read-ttl:10m}")
+    private Duration resilienceReadTtl;
+
+    @Value("${demo.resilience.journal-max-entries:100000}")
+    private int resilienceJournalMaxEntries;
+
+    @Value("${demo.active-refresh.enabled:false}")
+    private boolean activeRefreshEnabled;
+
+    @Value("${demo.active-refresh.window:10s}")
+    private Duration activeRefreshWindow;
+
+    @Value("${demo.active-refresh.flush-interval:200ms}")
+    private Duration activeRefreshFlushInterval;
+
+    @Value("${demo.token-guard.enabled:false}")
+    private boolean tokenGuardEnabled;
+
+    @Value("${demo.token-guard.expected-tokens:100000}")
+    private long tokenGuardExpectedTokens;
+
+    @Value("${demo.token-guard.fpp:0.01}")
+    private double tokenGuardFpp;
+
+    @Value("${demo.token-guard.rebuild-interval:60s}")
+    private Duration tokenGuardRebuildInterval;
+
+    @Value("${demo.token-guard.negative-ttl:2s}")
+    private Duration tokenGuardNegativeTtl;
+
+    @Value("${demo.token-guard.negative-max-size:100000}")
+    private int tokenGuardNegativeMaxSize;
+
+    @Value("${demo.token-guard.channel:" + TOKEN_GUARD_CHANNEL + "}")
+    private String tokenGuardChannel;
+
+    @Value("${demo.change-feed.enabled:false}")
+    private boolean changeFeedEnabled;
+
+    @Value("${demo.change-feed.stream:" + CHANGE_FEED_STREAM + "}")
+    private String changeFeedStream;
+
+    @Value("${demo.change-feed.partitions:4}")
+    private int changeFeedPartitions;
+
+    @Value("${demo.change-feed.max-length:100000}")
+    private long changeFeedMaxLength;
+
+    @Value("${demo.metrics.enabled:false}")
+    private boolean metricsEnabled;
+
+    @Value("${demo.metrics.window:60s}")
+    private Duration metricsWindow;
+
+    @Value("${demo.lettuce.connections:2}")
+    private int lettuceConnections;
+
+    @Value("${demo.lettuce.await-writes:true}")
+    private boolean lettuceAwaitWrites;
+
+    @Value("${spring.redis.host:localhost}")
+    private String redisHost;
+
+    @Value("${spring.redis.port:6379}")
+    private int redisPort;
+
+    @Value("${spring.redis.password:}")
+    private String redisPassword;
+
+    @Value("${spring.redis.database:0}")
+    private int redisDatabase;
+
+    @Value("${spring.redis.timeout:10s}")
+    private Duration redisTimeout;
+
+    public SaTokenComponentRewriteConfig(@Autowired(required = false) StringRedisTemplate redisTemplate,
+                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rewriteComponents();
+    }
+
     public void rewriteComponents() {
-        if ("memory".equalsIgnoreCase(storageMode)) {
-            SaManager.setSaTokenDao(new SaTokenDaoDefaultImpl());
+        String storage = storageMode.toLowerCase(Locale.ROOT);
+        SaTokenDao dao = SaManager.getSaTokenDao();
+        if (compactKeysEnabled) {
+            // below every other layer, which all keep working with the logical key names
+            dao = createCompactKeyDao(storage);
+        }
+        switch (storage) {
+            case "memory":
+                dao = createMemoryDao();
+                break;
+            case "memory-default":
+                dao = new SaTokenDaoDefaultImpl();
+                break;
+            case "tiered":
+                dao = createTieredDao(dao);
+                break;
+            case "redis-hash":
+                dao = createHashDao();
+                break;
+            case "write-behind":
+                requireRedis(storage);
+                dao = new WriteBehindSaTokenDao(dao, new PipelinedWriteBatchFlusher(redisTemplate));
+                break;
+            case "lua-login":
+                requireRedis(storage);
+                dao = new WriteBehindSaTokenDao(dao, new LuaWriteBatchFlusher(redisTemplate));
+                break;
+            case "sharded":
+                dao = createShardedDao();
+                break;
+            case "lettuce-async":
+                dao = createLettuceAsyncDao();
+                break;
+            default:
+                break;
+        }
+        if (resilienceEnabled) {
+            dao = createResilientDao(dao, storage);
+        }
+        if (activeRefreshEnabled) {
+            dao = createActiveRefreshDao(dao);
+        }
+        if (tokenGuardEnabled) {
+            dao = createTokenGuardDao(dao, storage);
+        }
+        if (changeFeedEnabled) {
+            dao = createChangeFeedDao(dao, storage);
+        }
+        if (dirtyTracking) {
+            // above every storage layer: a session with unwritten changes never reaches them
+            dao = new PendingSessionSaTokenDao(dao);
+        }
+        if (metricsEnabled) {
+            // outermost: measures each call as Sa-Token makes it, through all the layers above
+            MeteredSaTokenDao metered = new MeteredSaTokenDao(dao, metricsWindow.toMillis());
+            meterRegistry.ifAvailable(metered::bindTo);
+            dao = metered;
+        }
+        // installed once: replacing the dao destroys the previous one, which may be a layer of this chain
+        if (dao != SaManager.getSaTokenDao()) {
+            SaManager.setSaTokenDao(dao);
+        }
+
+        if (dirtyTracking) {
+            // also covers redis-hash: dirty keys are then flushed as single fields
+            SaStrategy.instance.createSession = DirtyTrackingSaSession::new;
+            SaStrategy.instance.sessionClassType = DirtyTrackingSaSession.class;
         }
 
         String mode = serializerMode.toLowerCase(Locale.ROOT);
+        SaSerializerTemplate serializer;
         switch (mode) {
             case "jdk-base64":
-                SaManager.setSaSerializerTemplate(new SaSerializerTemplateForJdkUseBase64());
+                serializer = new SaSerializerTemplateForJdkUseBase64();
                 break;
             case "jdk-hex":
-                SaManager.setSaSerializerTemplate(new SaSerializerTemplateForJdkUseHex());
+                serializer = new SaSerializerTemplateForJdkUseHex();
                 break;
             case "jdk-iso-8859-1":
-                SaManager.setSaSerializerTemplate(new SaSerializerTemplateForJdkUseISO_8859_1());
+                serializer = new SaSerializerTemplateForJdkUseISO_8859_1();
+                break;
+            case "binary":
+                serializer = new SaSerializerTemplateForBinary();
                 break;
             default:
-                SaManager.setSaSerializerTemplate(new SaSerializerTemplateForJson());
+                serializer = new SaSerializerTemplateForJson();
                 break;
         }
+        if (compressionEnabled) {
+            serializer = new CompressingSerializerTemplate(serializer, compressionThreshold, compressionLevel);
+        }
+        if (metricsEnabled) {
+            serializer = new MeteredSerializerTemplate(serializer);
+        }
+        SaManager.setSaSerializerTemplate(serializer);
+    }
+
+    @Override
+    public void destroy() {
+        SaManager.getSaTokenDao().destroy();
+    }
+
+    private SaTokenDao createTieredDao(SaTokenDao redisDao) {
+        requireRedis("tiered");
+        RedisInvalidationBus bus = new RedisInvalidationBus(redisTemplate, tieredChannel, nodeId);
+        TieredSaTokenDao dao = new TieredSaTokenDao(redisDao, new NearCache(tieredMaxSize, tieredTtl.toMillis()), bus);
+        bus.start();
+        return dao;
+    }
+
+    private SaTokenDao createHashDao() {
+        requireRedis("redis-hash");
+        SaTokenDaoForRedisHash dao = new SaTokenDaoForRedisHash();
+        dao.init(redisTemplate.getConnectionFactory());
+        SaStrategy.instance.createSession = FieldSaSession::new;
+        SaStrategy.instance.sessionClassType = FieldSaSession.class;
+        return dao;
+    }
+
+    private SaTokenDao createMemoryDao() {
+        if (memorySnapshotDir.isEmpty()) {
+            return new StripedMemorySaTokenDao(memoryMaxEntries, memoryStripes);
+        }
+        return new StripedMemorySaTokenDao(memoryMaxEntries, memoryStripes,
+                new MemorySnapshotStore(Paths.get(memorySnapshotDir)), memorySnapshotInterval.toMillis());
+    }
+
+    private SaTokenDao createShardedDao() {
+        if (shardNodes.isEmpty()) {
+            throw new IllegalStateException("demo.storage-mode=sharded requires demo.sharding.nodes");
+        }
+        Map<String, RedisShard> shards = new LinkedHashMap<>();
+        ConsistentHashRing<RedisShard> ring = shardRing(shardNodes, shards);
+        ConsistentHashRing<RedisShard> previous = previousShardNodes.isEmpty() ? null : shardRing(previousShardNodes, shards);
+
+        // tag new tokens with the account's ring position so token keys land next to the account session
+        SaCreateTokenFunction createToken = SaStrategy.instance.createToken;
+        SaStrategy.instance.createToken = (loginId, loginType) ->
+                ShardKeyRouter.tagToken(loginId, createToken.apply(loginId, loginType));
+        return new ShardedSaTokenDao(shards, ring, previous, virtualNodes);
+    }
+
+    private SaTokenDao createLettuceAsyncDao() {
+        RedisURI uri = RedisURI.builder()
+                .withHost(redisHost)
+                .withPort(redisPort)
+                .withDatabase(redisDatabase)
+                .withTimeout(redisTimeout)
+                .build();
+        if (!redisPassword.isEmpty()) {
+            uri.setPassword(redisPassword.toCharArray());
+        }
+        return LettuceAsyncSaTokenDao.connect(uri, lettuceConnections, lettuceAwaitWrites);
+    }
+
+    private SaTokenDao createCompactKeyDao(String storage) {
+        switch (storage) {
+            case "memory":
+            case "memory-default":
+            case "redis-hash":
+            case "write-behind":
+            case "lua-login":
+            case "sharded":
+            case "lettuce-async":
+                // each of these talks to Redis with the plain key names itself
+                throw new IllegalStateException("demo.compact-keys does not support demo.storage-mode=" + storage);
+            default:
+                break;
+        }
+        requireRedis("compact-keys");
+        return new SaTokenDaoForCompactKeys(redisTemplate,
+                new CompactKeyCodec(SaManager.getConfig().getTokenName(), StpUtil.TYPE), compactKeysLegacyFallback);
+    }
+
+    private SaTokenDao createResilientDao(SaTokenDao dao, String storage) {
+        switch (storage) {
+            case "memory":
+            case "memory-default":
+            case "redis-hash":
+            case "write-behind":
+            case "lua-login":
+                // hash sessions and batched writes bypass the string operations the journal records
+                throw new IllegalStateException("demo.resilience does not support demo.storage-mode=" + storage);
+            default:
+                break;
+        }
+        return new ResilientSaTokenDao(dao,
+                new StripedMemorySaTokenDao(resilienceReplicaMaxEntries, memoryStripes),
+                new CircuitBreaker(resilienceFailureThreshold, resilienceOpenDuration.toMillis()),
+                resilienceReadTtl.getSeconds(), resilienceJournalMaxEntries, resilienceProbeInterval.toMillis(),
+                "satoken:demo:resilience-probe:" + nodeId);
+    }
+
+    private SaTokenDao createActiveRefreshDao(SaTokenDao dao) {
+        WriteBatchFlusher flusher;
+        if (redisTemplate != null && DelegatingSaTokenDao.unwrap(dao, SaTokenDaoForRedisTemplate.class) != null
+                && DelegatingSaTokenDao.unwrap(dao, TieredSaTokenDao.class) == null
+                && DelegatingSaTokenDao.unwrap(dao, ResilientSaTokenDao.class) == null) {
+            // the last-active keys live in the Redis behind redisTemplate as plain strings
+            flusher = new PipelinedWriteBatchFlusher(redisTemplate);
+        } else {
+            // sharded, memory, lettuce-async, compact keys, tiered, resilience: each renewal through the dao chain
+            flusher = writes -> writes.forEach(write -> dao.update(write.getKey(), write.getValue()));
+        }
+        return new ActiveRefreshCoalescingSaTokenDao(dao, flusher, activeRefreshWindow.toMillis(),
+                activeRefreshFlushInterval.toMillis());
+    }
+
+    private SaTokenDao createTokenGuardDao(SaTokenDao dao, String storage) {
+        if (storage.startsWith("memory")) {
+            throw new IllegalStateException("demo.token-guard needs a Redis storage mode, not " + storage);
+        }
+        requireRedis("token-guard");
+        List<StringRedisTemplate> templates = new ArrayList<>();
+        ShardedSaTokenDao sharded = DelegatingSaTokenDao.unwrap(dao, ShardedSaTokenDao.class);
+        if (sharded == null) {
+            templates.add(redisTemplate);
+        } else {
+            sharded.getShards().forEach(shard -> templates.add(shard.getRedisTemplate()));
+        }
+        SaTokenDaoForCompactKeys compact = DelegatingSaTokenDao.unwrap(dao, SaTokenDaoForCompactKeys.class);
+        TokenKeyScanner scanner = (pattern, sink) -> {
+            ScanOptions options = ScanOptions.scanOptions().match(pattern).count(1000).build();
+            for (StringRedisTemplate template : templates) {
+                try (Cursor<String> keys = template.scan(options)) {
+                    keys.forEachRemaining(sink);
+                }
+            }
+            if (compact != null) {
+                compact.scanCompactKeys("token", sink);
+            }
+        };
+        // stamp at the end: in sharded mode the front of the token is the routing tag
+        SaCreateTokenFunction createToken = SaStrategy.instance.createToken;
+        SaStrategy.instance.createToken = (loginId, loginType) ->
+                TokenGuardSaTokenDao.stamp(createToken.apply(loginId, loginType), System.currentTimeMillis());
+        return new TokenGuardSaTokenDao(dao,
+                new NearCache(tokenGuardNegativeMaxSize, tokenGuardNegativeTtl.toMillis()),
+                new RedisInvalidationBus(redisTemplate, tokenGuardChannel, nodeId),
+                scanner, SaManager.getConfig().getTokenName(), tokenGuardExpectedTokens, tokenGuardFpp,
+                tokenGuardRebuildInterval.toMillis());
+    }
+
+    private SaTokenDao createChangeFeedDao(SaTokenDao dao, String storage) {
+        if (storage.startsWith("memory")) {
+            throw new IllegalStateException("demo.change-feed needs a Redis storage mode, not " + storage);
+        }
+        requireRedis("change-feed");
+        SessionChangeFeed feed = new SessionChangeFeed(redisTemplate, changeFeedStream, changeFeedPartitions,
+                changeFeedMaxLength, nodeId);
+        TieredSaTokenDao tiered = DelegatingSaTokenDao.unwrap(dao, TieredSaTokenDao.class);
+        if (tiered != null) {
+            feed.addListener(event -> event.getKeys().forEach(tiered::refresh));
+        }
+        SaTokenEventCenter.registerListener(new ChangeFeedListener(feed));
+        return new ChangeFeedSaTokenDao(dao, feed);
+    }
+
+    private ConsistentHashRing<RedisShard> shardRing(List<String> endpoints, Map<String, RedisShard> shards) {
+        Map<String, RedisShard> nodes = new LinkedHashMap<>();
+        for (String endpoint : endpoints) {
+            nodes.put(endpoint, shards.computeIfAbsent(endpoint, e -> RedisShard.connect(e, redisDatabase, redisTimeout)));
+        }
+        return new ConsistentHashRing<>(nodes, virtualNodes);
+    }
+
+    private void requireRedis(String storage) {
+        if (redisTemplate == null) {
+            throw new IllegalStateException("demo.storage-mode=" + storage + " requires a StringRedisTemplate");
+        }
     }
 }
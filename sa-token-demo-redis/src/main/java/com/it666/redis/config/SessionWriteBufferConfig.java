@@ -0,0 +1,34 @@
+package com.it666.redis.config;
+
+import com.it666.redis.filter.SessionDeltaFilter;
+import com.it666.redis.filter.SessionWriteBufferFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+
+@Configuration
+public class SessionWriteBufferConfig {
+
+    @Bean
+    public FilterRegistrationBean<SessionWriteBufferFilter> sessionWriteBufferFilter(
+            @Value("${demo.write-behind.url-patterns:/*}") List<String> urlPatterns) {
+        FilterRegistrationBean<SessionWriteBufferFilter> registration = new FilterRegistrationBean<>(new SessionWriteBufferFilter());
+        registration.setUrlPatterns(urlPatterns);
+        // outermost, so the flush happens after everything else in the request has written
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<SessionDeltaFilter> sessionDeltaFilter() {
+        FilterRegistrationBean<SessionDeltaFilter> registration = new FilterRegistrationBean<>(new SessionDeltaFilter());
+        registration.addUrlPatterns("/*");
+        // inside the write buffer, so the session deltas land in the same flush
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+}
@@ -1,12 +1,21 @@
 package com.it666.redis.controller;
 
 import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.serializer.SaSerializerTemplate;
 import cn.dev33.satoken.session.SaSession;
 import cn.dev33.satoken.stp.StpUtil;
+import cn.dev33.satoken.strategy.SaStrategy;
 import cn.dev33.satoken.util.SaResult;
+import com.it666.redis.dao.DelegatingSaTokenDao;
+import com.it666.redis.dao.DirtyTrackingSaSession;
+import com.it666.redis.dao.StorageStats;
+import com.it666.redis.health.RedisHealthProber;
+import com.it666.redis.key.CompactKeyCodec;
+import com.it666.redis.key.CompactKeyMigrator;
+import com.it666.redis.metrics.MeteredSerializerTemplate;
+import com.it666.redis.shard.ShardedSaTokenDao;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -16,15 +25,15 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.Instant;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/redis-demo")
 public class RedisDemoController {
 
+    private final RedisHealthProber healthProber;
     private final StringRedisTemplate redisTemplate;
 
     @Value("${demo.node-id:${spring.application.name}:${server.port}}")
@@ -36,7 +45,9 @@ public class RedisDemoController {
     @Value("${demo.serializer:json}")
     private String serializerMode;
 
-    public RedisDemoController(@Autowired(required = false) StringRedisTemplate redisTemplate) {
+    public RedisDemoController(RedisHealthProber healthProber,
+                               @Autowired(required = false) StringRedisTemplate redisTemplate) {
+        this.healthProber = healthProber;
         this.redisTemplate = redisTemplate;
     }
 
@@ -83,7 +94,8 @@ public class RedisDemoController {
         session.set("nickname", nickname);
         session.set("lastEditNode", nodeId);
         session.set("lastEditAt", Instant.now().toString());
-        return SaResult.ok("nickname updated").set("nickname", nickname);
+        // read back through a fresh lookup: the change must be visible before the request completes
+        return SaResult.ok("nickname updated").set("nickname", StpUtil.getSession().get("nickname"));
     }
 
     @GetMapping("/storage")
@@ -94,10 +106,50 @@ public class RedisDemoController {
         data.put("serializerMode", serializerMode);
         data.put("daoClass", SaManager.getSaTokenDao().getClass().getName());
         data.put("serializerClass", SaManager.getSaSerializerTemplate().getClass().getName());
-        data.put("redis", redisCheck());
+        data.put("daoStats", StorageStats.collect(SaManager.getSaTokenDao()));
+        SaSerializerTemplate serializer = SaManager.getSaSerializerTemplate();
+        if (serializer instanceof MeteredSerializerTemplate) {
+            serializer = ((MeteredSerializerTemplate) serializer).getDelegate();
+        }
+        if (serializer instanceof StorageStats) {
+            data.put("serializerStats", ((StorageStats) serializer).storageStats());
+        }
+        if (SaStrategy.instance.sessionClassType == DirtyTrackingSaSession.class) {
+            data.put("sessionDelta", DirtyTrackingSaSession.stats());
+        }
+        data.put("redis", healthProber.snapshot());
         return SaResult.data(data);
     }
 
+    @PostMapping("/shards/rebalance")
+    public SaResult rebalanceShards() {
+        ShardedSaTokenDao dao = DelegatingSaTokenDao.unwrap(SaManager.getSaTokenDao(), ShardedSaTokenDao.class);
+        if (dao == null) {
+            return SaResult.error("demo.storage-mode is not sharded");
+        }
+        return SaResult.ok("rebalanced")
+                .set("nodeId", nodeId)
+                .set("report", dao.rebalance(SaManager.getConfig().getTokenName() + ":*"));
+    }
+
+    /**
+     * Renames existing token and session keys into ({@code pack}) or out of ({@code unpack}) the
+     * compact layout; independent of {@code demo.compact-keys.enabled}, so it also serves a rollback.
+     */
+    @PostMapping("/keys/migrate")
+    public SaResult migrateKeys(@RequestParam(defaultValue = "pack") String direction) {
+        if (redisTemplate == null) {
+            return SaResult.error("no StringRedisTemplate");
+        }
+        if (!"pack".equals(direction) && !"unpack".equals(direction)) {
+            return SaResult.error("direction must be pack or unpack");
+        }
+        CompactKeyCodec codec = new CompactKeyCodec(SaManager.getConfig().getTokenName(), StpUtil.TYPE);
+        return SaResult.ok("migrated")
+                .set("nodeId", nodeId)
+                .set("report", CompactKeyMigrator.migrate(redisTemplate, codec, "pack".equals(direction)));
+    }
+
     @GetMapping("/session-by-login-id")
     public SaResult sessionByLoginId(@RequestParam(defaultValue = "10001") long loginId) {
         SaSession session = StpUtil.getSessionByLoginId(loginId, false);
@@ -125,33 +177,11 @@ public class RedisDemoController {
                 .set("loginId", StpUtil.isLogin() ? StpUtil.getLoginId() : null);
     }
 
+    /**
+     * Read-only view of all session attributes. The session was loaded by a single dao read, so this
+     * copies nothing; in memory mode it is a weakly consistent view of the live session.
+     */
     private Map<String, Object> readSessionData(SaSession session) {
-        Map<String, Object> data = new LinkedHashMap<>();
-        for (String key : session.keys()) {
-            data.put(key, session.get(key));
-        }
-        return data;
-    }
-
-    private Map<String, Object> redisCheck() {
-        Map<String, Object> redisInfo = new LinkedHashMap<>();
-        if (redisTemplate == null) {
-            redisInfo.put("status", "redis template missing");
-            return redisInfo;
-        }
-
-        try (RedisConnection connection = Objects.requireNonNull(redisTemplate.getConnectionFactory()).getConnection()) {
-            redisInfo.put("ping", connection.ping());
-        } catch (Exception ex) {
-            redisInfo.put("pingError", ex.getClass().getSimpleName() + ": " + ex.getMessage());
-            return redisInfo;
-        }
-
-        String key = "satoken:demo:redis-check:" + nodeId;
-        String value = Instant.now().toString();
-        redisTemplate.opsForValue().set(key, value, 120, TimeUnit.SECONDS);
-        redisInfo.put("writeKey", key);
-        redisInfo.put("readValue", redisTemplate.opsForValue().get(key));
-        return redisInfo;
+        return Collections.unmodifiableMap(session.getDataMap());
     }
 }
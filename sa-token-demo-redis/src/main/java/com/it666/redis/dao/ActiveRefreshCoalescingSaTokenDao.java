@@ -0,0 +1,320 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.util.SaValue2Box;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces the active-timeout renewals ({@code demo.active-refresh.enabled=true}).
+ * <p>
+ * With {@code sa-token.active-timeout} set, every authenticated request rewrites the token's
+ * {@code last-active} key. This decorator records the newest timestamp locally instead, and a
+ * background thread sends the renewals that are due every {@code flushIntervalMillis} as one
+ * {@link WriteBatchFlusher} batch, so each token is written at most once per {@code windowMillis}
+ * per node. Reads of a pending key on this node see the pending value.
+ * <p>
+ * A renewal is only held back while the timestamp already in storage keeps the token active until
+ * the next flush, plus a second of margin. Closer to that point it is flushed before its window
+ * has elapsed, or written immediately if even the next flush would be too late, so other nodes
+ * never see a token frozen because of the delay. Renewals use
+ * {@code SET ... XX}, so a token that expired or logged out in the meantime is not brought back,
+ * and a {@code set} or {@code delete} of the key drops whatever is pending for it.
+ */
+public class ActiveRefreshCoalescingSaTokenDao extends DelegatingSaTokenDao implements StorageStats {
+
+    private static final Logger log = LoggerFactory.getLogger(ActiveRefreshCoalescingSaTokenDao.class);
+
+    private static final String LAST_ACTIVE_KIND = "last-active:";
+    private static final long SAFETY_MARGIN_MILLIS = 1000;
+
+    private final WriteBatchFlusher flusher;
+    private final long windowMillis;
+    private final long flushIntervalMillis;
+
+    private final Map<String, Activity> activities = new ConcurrentHashMap<>();
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService scheduler;
+
+    private final LongAdder renewals = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder immediateWrites = new LongAdder();
+    private final LongAdder nearExpiryWrites = new LongAdder();
+    private final LongAdder earlyFlushes = new LongAdder();
+    private final LongAdder flushedWrites = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    public ActiveRefreshCoalescingSaTokenDao(SaTokenDao delegate, WriteBatchFlusher flusher, long windowMillis,
+                                             long flushIntervalMillis) {
+        super(delegate);
+        this.flusher = flusher;
+        this.windowMillis = windowMillis;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    @Override
+    public String get(String key) {
+        if (isLastActiveKey(key)) {
+            Activity activity = activities.get(key);
+            if (activity != null) {
+                String value = activity.pendingValue;
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return delegate.get(key);
+    }
+
+    @Override
+    public void set(String key, String value, long timeout) {
+        delegate.set(key, value, timeout);
+        if (isLastActiveKey(key)) {
+            while (true) {
+                Activity activity = activities.computeIfAbsent(key, k -> new Activity());
+                synchronized (activity) {
+                    if (!activity.removed) {
+                        activity.pendingValue = null;
+                        activity.written(value, System.currentTimeMillis());
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void update(String key, String value) {
+        if (!isLastActiveKey(key)) {
+            delegate.update(key, value);
+            return;
+        }
+        renewals.increment();
+        long now = System.currentTimeMillis();
+        while (true) {
+            Activity activity = activities.computeIfAbsent(key, k -> new Activity());
+            synchronized (activity) {
+                if (activity.removed) {
+                    // evicted or deleted while we were getting hold of it
+                    continue;
+                }
+                if (activity.lastWrittenAt == 0) {
+                    // nothing known about what storage holds
+                    immediateWrites.increment();
+                } else if (!canDefer(activity, now)) {
+                    nearExpiryWrites.increment();
+                } else {
+                    if (activity.pendingValue == null) {
+                        pending.add(key);
+                    }
+                    activity.pendingValue = value;
+                    coalesced.increment();
+                    return;
+                }
+                delegate.update(key, value);
+                activity.written(value, now);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        if (isLastActiveKey(key)) {
+            Activity activity = activities.remove(key);
+            if (activity != null) {
+                synchronized (activity) {
+                    activity.removed = true;
+                    activity.pendingValue = null;
+                }
+            }
+        }
+        delegate.delete(key);
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sa-token-active-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::evictIdle, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // renewals still pending are written regardless of their window
+        flush(true);
+        super.destroy();
+    }
+
+    /**
+     * Sends every pending renewal whose window has elapsed as one batch.
+     */
+    public void flush() {
+        flush(false);
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("windowMillis", windowMillis);
+        stats.put("flushIntervalMillis", flushIntervalMillis);
+        stats.put("trackedTokens", activities.size());
+        stats.put("pending", pending.size());
+        stats.put("renewals", renewals.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("immediateWrites", immediateWrites.sum());
+        stats.put("nearExpiryWrites", nearExpiryWrites.sum());
+        stats.put("earlyFlushes", earlyFlushes.sum());
+        stats.put("flushedWrites", flushedWrites.sum());
+        stats.put("flushes", flushes.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        return stats;
+    }
+
+    private synchronized void flush(boolean ignoreWindow) {
+        long now = System.currentTimeMillis();
+        List<BufferedWrite> batch = new ArrayList<>();
+        List<Activity> flushed = new ArrayList<>();
+        List<String> notDue = new ArrayList<>();
+        String key;
+        while ((key = pending.poll()) != null) {
+            Activity activity = activities.get(key);
+            if (activity == null) {
+                continue;
+            }
+            synchronized (activity) {
+                String value = activity.pendingValue;
+                if (value == null) {
+                    continue;
+                }
+                if (!ignoreWindow && now - activity.lastWrittenAt < windowMillis) {
+                    if (canDefer(activity, now)) {
+                        notDue.add(key);
+                        continue;
+                    }
+                    earlyFlushes.increment();
+                }
+                BufferedWrite write = new BufferedWrite(key);
+                write.update(value);
+                batch.add(write);
+                flushed.add(activity);
+                activity.pendingValue = null;
+                activity.written(value, now);
+            }
+        }
+        pending.addAll(notDue);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flusher.flush(batch);
+        } catch (RuntimeException ex) {
+            flushFailures.increment();
+            // storage state is unknown again: the next renewal of these tokens is written through
+            for (Activity activity : flushed) {
+                synchronized (activity) {
+                    activity.lastWrittenAt = 0;
+                }
+            }
+            throw ex;
+        }
+        flushes.increment();
+        flushedWrites.add(batch.size());
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.warn("failed to flush active-timeout renewals", ex);
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        activities.entrySet().removeIf(entry -> {
+            Activity activity = entry.getValue();
+            synchronized (activity) {
+                activity.removed = activity.pendingValue == null && now - activity.lastWrittenAt > 2 * windowMillis;
+                return activity.removed;
+            }
+        });
+    }
+
+    /**
+     * Whether a write deferred to the next flush still lands while the stored timestamp keeps the
+     * token active. The flush applies the same test, so a pending renewal goes out before its
+     * window has elapsed when the token would otherwise look frozen.
+     */
+    private boolean canDefer(Activity activity, long now) {
+        long activeTimeout = activity.activeTimeoutSeconds;
+        if (activeTimeout == SaTokenDao.NEVER_EXPIRE) {
+            return true;
+        }
+        return now + flushIntervalMillis + SAFETY_MARGIN_MILLIS < activity.storedActiveAt + activeTimeout * 1000;
+    }
+
+    /**
+     * Last-active keys are {@code <token-name>:<login-type>:last-active:<token>}.
+     */
+    private static boolean isLastActiveKey(String key) {
+        int first = key.indexOf(':');
+        if (first < 0) {
+            return false;
+        }
+        int second = key.indexOf(':', first + 1);
+        return second > 0 && key.startsWith(LAST_ACTIVE_KIND, second + 1);
+    }
+
+    /**
+     * What this node last wrote for one token, and the renewal it has not written yet.
+     */
+    private static final class Activity {
+
+        /** 0 while unknown */
+        long lastWrittenAt;
+        long storedActiveAt;
+        long activeTimeoutSeconds;
+        volatile String pendingValue;
+        /** no longer in the map; a writer holding it must look the key up again */
+        boolean removed;
+
+        /**
+         * The value is {@code <millis>} or {@code <millis>,<activeTimeout>} (dynamic active-timeout).
+         */
+        void written(String value, long now) {
+            SaValue2Box box = new SaValue2Box(value);
+            lastWrittenAt = now;
+            storedActiveAt = box.getValue1AsLong(now);
+            activeTimeoutSeconds = box.getValue2AsLong(SaManager.getConfig().getActiveTimeout());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+
+/**
+ * The net effect of all string writes made to one key during a request.
+ * <p>
+ * Writes are folded as they arrive, so the flush sends at most one value command and one
+ * expiry command per key no matter how many times the key was touched.
+ */
+public final class BufferedWrite {
+
+    public enum Kind {
+        /** no value change, only an expiry change may be pending */
+        NONE,
+        /** unconditional write with a fresh TTL */
+        SET,
+        /** overwrite if present, keep the TTL */
+        UPDATE,
+        DELETE
+    }
+
+    public static final long NO_EXPIRE_CHANGE = Long.MIN_VALUE;
+
+    private final String key;
+    private Kind kind = Kind.NONE;
+    private String value;
+    private long timeout;
+    private long expire = NO_EXPIRE_CHANGE;
+
+    BufferedWrite(String key) {
+        this.key = key;
+    }
+
+    void set(String value, long timeout) {
+        this.kind = Kind.SET;
+        this.value = value;
+        this.timeout = timeout;
+        this.expire = NO_EXPIRE_CHANGE;
+    }
+
+    void update(String value) {
+        if (kind == Kind.DELETE) {
+            return;
+        }
+        if (kind == Kind.NONE) {
+            kind = Kind.UPDATE;
+        }
+        this.value = value;
+    }
+
+    void delete() {
+        this.kind = Kind.DELETE;
+        this.value = null;
+        this.expire = NO_EXPIRE_CHANGE;
+    }
+
+    void updateTimeout(long timeout) {
+        if (kind == Kind.DELETE) {
+            return;
+        }
+        if (kind == Kind.SET) {
+            this.timeout = timeout;
+        } else {
+            this.expire = timeout;
+        }
+    }
+
+    /**
+     * Whether reads still need the stored value: SET and DELETE fully determine the outcome.
+     */
+    boolean dependsOnStorage() {
+        return kind == Kind.NONE || kind == Kind.UPDATE;
+    }
+
+    /**
+     * Value visible to the writing request; {@code existing} is the value currently in storage.
+     */
+    String read(String existing) {
+        switch (kind) {
+            case SET:
+                return value;
+            case DELETE:
+                return null;
+            case UPDATE:
+                return existing == null ? null : value;
+            default:
+                return existing;
+        }
+    }
+
+    /**
+     * Remaining TTL visible to the writing request; {@code existing} is the TTL currently in storage.
+     */
+    long readTimeout(long existing) {
+        switch (kind) {
+            case SET:
+                return timeout;
+            case DELETE:
+                return SaTokenDao.NOT_VALUE_EXPIRE;
+            default:
+                return existing == SaTokenDao.NOT_VALUE_EXPIRE || expire == NO_EXPIRE_CHANGE ? existing : expire;
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public long getExpire() {
+        return expire;
+    }
+
+    /**
+     * Number of Redis commands this write turns into.
+     */
+    public int commandCount() {
+        return (kind == Kind.NONE ? 0 : 1) + (expire == NO_EXPIRE_CHANGE ? 0 : 1);
+    }
+}
@@ -0,0 +1,126 @@
+package com.it666.redis.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker in front of the storage used by {@link ResilientSaTokenDao}.
+ * <ul>
+ *     <li>{@code CLOSED}: calls go to storage. {@code failureThreshold} failed calls in a row, or one
+ *     {@link #trip(RuntimeException) trip}, open the circuit.</li>
+ *     <li>{@code OPEN}: calls are served locally. Once {@code openMillis} have passed the owner may
+ *     {@link #tryHalfOpen() half-open} it to probe storage.</li>
+ *     <li>{@code HALF_OPEN}: storage answered a probe and the owner is catching it up; calls are still
+ *     served locally until it {@link #close() closes}, or it {@link #reopen(RuntimeException) reopens}.</li>
+ * </ul>
+ * The time spent outside {@code CLOSED} is accumulated for the stats.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private volatile State state = State.CLOSED;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private long openedAt;
+    private long degradedSince;
+    private long degradedMillis;
+    private long outages;
+    private String lastFailure;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    public void recordSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    public synchronized void recordFailure(RuntimeException ex) {
+        lastFailure = describe(ex);
+        if (state == State.CLOSED && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Opens the circuit regardless of the threshold.
+     */
+    public synchronized void trip(RuntimeException ex) {
+        lastFailure = describe(ex);
+        if (state == State.CLOSED) {
+            open(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Moves an open circuit whose open period has passed to {@code HALF_OPEN}; returns whether it did.
+     */
+    public synchronized boolean tryHalfOpen() {
+        if (state != State.OPEN || System.currentTimeMillis() - openedAt < openMillis) {
+            return false;
+        }
+        state = State.HALF_OPEN;
+        return true;
+    }
+
+    public synchronized void reopen(RuntimeException ex) {
+        lastFailure = describe(ex);
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized void close() {
+        if (state == State.CLOSED) {
+            return;
+        }
+        degradedMillis += System.currentTimeMillis() - degradedSince;
+        consecutiveFailures.set(0);
+        state = State.CLOSED;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        long now = System.currentTimeMillis();
+        boolean degraded = state != State.CLOSED;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("outages", outages);
+        stats.put("degradedSince", degraded ? degradedSince : null);
+        stats.put("currentOutageMillis", degraded ? now - degradedSince : 0);
+        stats.put("totalDegradedMillis", degradedMillis + (degraded ? now - degradedSince : 0));
+        stats.put("lastFailure", lastFailure);
+        return stats;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openedAt = now;
+        degradedSince = now;
+        outages++;
+    }
+
+    private static String describe(RuntimeException ex) {
+        return ex.getClass().getSimpleName() + ": " + ex.getMessage();
+    }
+}
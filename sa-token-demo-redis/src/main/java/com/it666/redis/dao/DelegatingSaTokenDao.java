@@ -0,0 +1,146 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.session.SaSession;
+
+import java.util.List;
+
+/**
+ * Base class for SaTokenDao decorators: forwards every call to the wrapped dao,
+ * subclasses override only the operations they care about.
+ */
+public abstract class DelegatingSaTokenDao implements SaTokenDao {
+
+    protected final SaTokenDao delegate;
+
+    protected DelegatingSaTokenDao(SaTokenDao delegate) {
+        this.delegate = delegate;
+    }
+
+    public SaTokenDao getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the outermost layer of a decorator chain that is an instance of {@code type}, or {@code null}.
+     */
+    public static <T> T unwrap(SaTokenDao dao, Class<T> type) {
+        while (dao != null) {
+            if (type.isInstance(dao)) {
+                return type.cast(dao);
+            }
+            dao = dao instanceof DelegatingSaTokenDao ? ((DelegatingSaTokenDao) dao).getDelegate() : null;
+        }
+        return null;
+    }
+
+    @Override
+    public String get(String key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public void set(String key, String value, long timeout) {
+        delegate.set(key, value, timeout);
+    }
+
+    @Override
+    public void update(String key, String value) {
+        delegate.update(key, value);
+    }
+
+    @Override
+    public void delete(String key) {
+        delegate.delete(key);
+    }
+
+    @Override
+    public long getTimeout(String key) {
+        return delegate.getTimeout(key);
+    }
+
+    @Override
+    public void updateTimeout(String key, long timeout) {
+        delegate.updateTimeout(key, timeout);
+    }
+
+    @Override
+    public Object getObject(String key) {
+        return delegate.getObject(key);
+    }
+
+    @Override
+    public <T> T getObject(String key, Class<T> classType) {
+        return delegate.getObject(key, classType);
+    }
+
+    @Override
+    public void setObject(String key, Object object, long timeout) {
+        delegate.setObject(key, object, timeout);
+    }
+
+    @Override
+    public void updateObject(String key, Object object) {
+        delegate.updateObject(key, object);
+    }
+
+    @Override
+    public void deleteObject(String key) {
+        delegate.deleteObject(key);
+    }
+
+    @Override
+    public long getObjectTimeout(String key) {
+        return delegate.getObjectTimeout(key);
+    }
+
+    @Override
+    public void updateObjectTimeout(String key, long timeout) {
+        delegate.updateObjectTimeout(key, timeout);
+    }
+
+    @Override
+    public SaSession getSession(String sessionId) {
+        return delegate.getSession(sessionId);
+    }
+
+    @Override
+    public void setSession(SaSession session, long timeout) {
+        delegate.setSession(session, timeout);
+    }
+
+    @Override
+    public void updateSession(SaSession session) {
+        delegate.updateSession(session);
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        delegate.deleteSession(sessionId);
+    }
+
+    @Override
+    public long getSessionTimeout(String sessionId) {
+        return delegate.getSessionTimeout(sessionId);
+    }
+
+    @Override
+    public void updateSessionTimeout(String sessionId, long timeout) {
+        delegate.updateSessionTimeout(sessionId, timeout);
+    }
+
+    @Override
+    public List<String> searchData(String prefix, String keyword, int start, int size, boolean sortType) {
+        return delegate.searchData(prefix, keyword, start, size, sortType);
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    @Override
+    public void destroy() {
+        delegate.destroy();
+    }
+}
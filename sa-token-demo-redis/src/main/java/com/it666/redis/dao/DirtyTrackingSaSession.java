@@ -0,0 +1,234 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.session.SaSession;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SaSession that persists only the attributes whose value actually changed
+ * ({@code demo.session.dirty-tracking=true}).
+ * <p>
+ * Setting a value equal to the current one, or deleting an absent key, is a no-op. Between
+ * {@link #begin()} and {@link #complete()} (driven by {@code SessionDeltaFilter}) changed keys are
+ * only marked dirty and each session is written once when the request completes: field by field
+ * when the dao is a {@link SessionFieldStore}, otherwise as a single {@link #update()}.
+ * Within a request, re-reading a session that has pending changes returns the changed copy
+ * ({@link PendingSessionSaTokenDao}). Outside a request every change is written immediately, like
+ * {@link FieldSaSession}.
+ */
+public class DirtyTrackingSaSession extends SaSession {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final ThreadLocal<Map<String, DirtyTrackingSaSession>> PENDING = new ThreadLocal<>();
+
+    private static final AtomicLong SKIPPED_WRITES = new AtomicLong();
+    private static final AtomicLong DEFERRED_WRITES = new AtomicLong();
+    private static final AtomicLong FLUSHES = new AtomicLong();
+    private static final AtomicLong FLUSHED_KEYS = new AtomicLong();
+
+    private transient Set<String> dirtyKeys;
+
+    public DirtyTrackingSaSession() {
+    }
+
+    public DirtyTrackingSaSession(String id) {
+        super(id);
+    }
+
+    public static boolean isDeferring() {
+        return PENDING.get() != null;
+    }
+
+    public static void begin() {
+        PENDING.set(new LinkedHashMap<>());
+    }
+
+    /**
+     * Ends the current request scope and writes the changes of every session touched in it.
+     * A failed write is rethrown, exactly as if the immediate write had failed.
+     */
+    public static void complete() {
+        Map<String, DirtyTrackingSaSession> pending = PENDING.get();
+        PENDING.remove();
+        if (pending == null) {
+            return;
+        }
+        for (DirtyTrackingSaSession session : pending.values()) {
+            session.flush();
+        }
+    }
+
+    /**
+     * This request's copy of {@code sessionId} if it has changes that are not written yet, otherwise
+     * {@code null}. Served by {@link PendingSessionSaTokenDao} so that a request reads its own writes.
+     */
+    static DirtyTrackingSaSession pending(String sessionId) {
+        Map<String, DirtyTrackingSaSession> pending = PENDING.get();
+        if (pending == null) {
+            return null;
+        }
+        DirtyTrackingSaSession session = pending.get(sessionId);
+        return session != null && session.dirtyKeys != null && !session.dirtyKeys.isEmpty() ? session : null;
+    }
+
+    /**
+     * Forgets this request's unwritten changes to {@code sessionId}, which has been replaced or deleted
+     * in storage.
+     */
+    static void discard(String sessionId) {
+        Map<String, DirtyTrackingSaSession> pending = PENDING.get();
+        if (pending == null) {
+            return;
+        }
+        DirtyTrackingSaSession session = pending.remove(sessionId);
+        if (session != null && session.dirtyKeys != null) {
+            session.dirtyKeys.clear();
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("skippedWrites", SKIPPED_WRITES.get());
+        stats.put("deferredWrites", DEFERRED_WRITES.get());
+        stats.put("flushes", FLUSHES.get());
+        stats.put("flushedKeys", FLUSHED_KEYS.get());
+        return stats;
+    }
+
+    @Override
+    public SaSession set(String key, Object value) {
+        Map<String, Object> data = getDataMap();
+        Object existing = data.get(key);
+        if (unchanged(existing, value) && (existing != null || data.containsKey(key))) {
+            SKIPPED_WRITES.incrementAndGet();
+            return this;
+        }
+        data.put(key, value);
+        changed(key);
+        return this;
+    }
+
+    @Override
+    public SaSession setByNull(String key, Object value) {
+        if (!has(key)) {
+            set(key, value);
+        }
+        return this;
+    }
+
+    @Override
+    public SaSession delete(String key) {
+        Map<String, Object> data = getDataMap();
+        if (!data.containsKey(key)) {
+            SKIPPED_WRITES.incrementAndGet();
+            return this;
+        }
+        data.remove(key);
+        changed(key);
+        return this;
+    }
+
+    /**
+     * Writes the whole session, which also covers every pending change.
+     */
+    @Override
+    public void update() {
+        if (dirtyKeys != null) {
+            dirtyKeys.clear();
+        }
+        super.update();
+    }
+
+    @Override
+    public void logout() {
+        if (dirtyKeys != null) {
+            dirtyKeys.clear();
+        }
+        super.logout();
+    }
+
+    private void changed(String key) {
+        dirtyKeys().add(key);
+        Map<String, DirtyTrackingSaSession> pending = PENDING.get();
+        if (pending == null) {
+            flush();
+            return;
+        }
+        DEFERRED_WRITES.incrementAndGet();
+        DirtyTrackingSaSession previous = pending.put(getId(), this);
+        if (previous != null && previous != this) {
+            absorb(previous);
+        }
+    }
+
+    /**
+     * A string-backed dao hands out a fresh copy on every read. Once a copy has unwritten changes
+     * {@link PendingSessionSaTokenDao} hands out that copy instead, but two copies read before either
+     * was changed can still both be changed. The older copy's unwritten changes are newer than what
+     * this copy loaded, except for keys this copy has changed itself; take them over so that a
+     * single write carries both.
+     */
+    private void absorb(DirtyTrackingSaSession older) {
+        Map<String, Object> data = getDataMap();
+        Map<String, Object> olderData = older.getDataMap();
+        for (String key : older.dirtyKeys()) {
+            if (dirtyKeys.add(key)) {
+                if (olderData.containsKey(key)) {
+                    data.put(key, olderData.get(key));
+                } else {
+                    data.remove(key);
+                }
+            }
+        }
+        older.dirtyKeys.clear();
+    }
+
+    private void flush() {
+        if (dirtyKeys == null || dirtyKeys.isEmpty()) {
+            return;
+        }
+        int keys = dirtyKeys.size();
+        SessionFieldStore store = SessionFieldStore.find(SaManager.getSaTokenDao());
+        if (store == null) {
+            update();
+        } else {
+            Map<String, Object> data = getDataMap();
+            for (String key : dirtyKeys) {
+                if (data.containsKey(key)) {
+                    store.setSessionField(getId(), key, data.get(key));
+                } else {
+                    store.deleteSessionField(getId(), key);
+                }
+            }
+            dirtyKeys.clear();
+        }
+        FLUSHES.incrementAndGet();
+        FLUSHED_KEYS.addAndGet(keys);
+    }
+
+    private Set<String> dirtyKeys() {
+        if (dirtyKeys == null) {
+            dirtyKeys = new LinkedHashSet<>();
+        }
+        return dirtyKeys;
+    }
+
+    /**
+     * Equal values are only skipped when they are distinct instances or immutable: setting the same
+     * mutable object again is the usual way to publish an in-place change, and must still be written.
+     */
+    private static boolean unchanged(Object existing, Object value) {
+        if (existing == value) {
+            return value == null || value instanceof String || value instanceof Number
+                    || value instanceof Boolean || value instanceof Character || value instanceof Enum;
+        }
+        return Objects.equals(existing, value);
+    }
+}
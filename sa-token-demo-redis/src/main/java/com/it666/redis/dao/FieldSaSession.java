@@ -0,0 +1,52 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.session.SaSession;
+
+/**
+ * SaSession whose attribute writes go to {@link SessionFieldStore} one field at a time,
+ * falling back to a whole-session {@link #update()} when the dao has no field support.
+ */
+public class FieldSaSession extends SaSession {
+
+    private static final long serialVersionUID = 1L;
+
+    public FieldSaSession() {
+    }
+
+    public FieldSaSession(String id) {
+        super(id);
+    }
+
+    @Override
+    public SaSession set(String key, Object value) {
+        getDataMap().put(key, value);
+        SessionFieldStore store = SessionFieldStore.find(SaManager.getSaTokenDao());
+        if (store != null) {
+            store.setSessionField(getId(), key, value);
+        } else {
+            update();
+        }
+        return this;
+    }
+
+    @Override
+    public SaSession setByNull(String key, Object value) {
+        if (!has(key)) {
+            set(key, value);
+        }
+        return this;
+    }
+
+    @Override
+    public SaSession delete(String key) {
+        getDataMap().remove(key);
+        SessionFieldStore store = SessionFieldStore.find(SaManager.getSaTokenDao());
+        if (store != null) {
+            store.deleteSessionField(getId(), key);
+        } else {
+            update();
+        }
+        return this;
+    }
+}
@@ -0,0 +1,70 @@
+package com.it666.redis.dao;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Flushes a write batch as one invocation of a server-side Lua script.
+ * <p>
+ * The script is sent with {@code EVALSHA} and only loaded on the first {@code NOSCRIPT} reply,
+ * so after warm-up a whole login is a single short command, and it runs atomically on the server.
+ * Each key takes four arguments: kind, value, timeout and expiry change ({@code -1} is
+ * {@code SaTokenDao.NEVER_EXPIRE}, empty means unchanged).
+ */
+public class LuaWriteBatchFlusher implements WriteBatchFlusher {
+
+    private static final String NO_EXPIRE_CHANGE = "";
+
+    static final RedisScript<Long> WRITE_BATCH_SCRIPT = new DefaultRedisScript<>(
+            "for i, key in ipairs(KEYS) do "
+                    + "local base = (i - 1) * 4 "
+                    + "local kind = ARGV[base + 1] "
+                    + "if kind == 'S' then "
+                    + "  if ARGV[base + 3] == '-1' then redis.call('SET', key, ARGV[base + 2]) "
+                    + "  else redis.call('SET', key, ARGV[base + 2], 'EX', ARGV[base + 3]) end "
+                    + "elseif kind == 'U' then redis.call('SET', key, ARGV[base + 2], 'XX', 'KEEPTTL') "
+                    + "elseif kind == 'D' then redis.call('DEL', key) end "
+                    + "local expire = ARGV[base + 4] "
+                    + "if expire == '-1' then redis.call('PERSIST', key) "
+                    + "elseif expire ~= '' then redis.call('EXPIRE', key, expire) end "
+                    + "end "
+                    + "return #KEYS", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public LuaWriteBatchFlusher(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void flush(Collection<BufferedWrite> writes) {
+        List<String> keys = new ArrayList<>(writes.size());
+        List<String> args = new ArrayList<>(writes.size() * 4);
+        for (BufferedWrite write : writes) {
+            keys.add(write.getKey());
+            args.add(kindOf(write));
+            args.add(write.getValue() == null ? "" : write.getValue());
+            args.add(String.valueOf(write.getTimeout()));
+            args.add(write.getExpire() == BufferedWrite.NO_EXPIRE_CHANGE ? NO_EXPIRE_CHANGE : String.valueOf(write.getExpire()));
+        }
+        redisTemplate.execute(WRITE_BATCH_SCRIPT, keys, args.toArray());
+    }
+
+    private static String kindOf(BufferedWrite write) {
+        switch (write.getKind()) {
+            case SET:
+                return "S";
+            case UPDATE:
+                return "U";
+            case DELETE:
+                return "D";
+            default:
+                return "N";
+        }
+    }
+}
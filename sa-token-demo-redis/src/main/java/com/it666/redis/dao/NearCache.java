@@ -0,0 +1,125 @@
+package com.it666.redis.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process LRU cache with a fixed time-to-live per entry.
+ * <p>
+ * Loads are guarded by an invalidation generation: a value read from the backing store is only
+ * cached if no invalidation happened while it was being read, so a concurrent remote write can
+ * never be overwritten by the stale value it replaced.
+ */
+public class NearCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public NearCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > NearCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value, or {@code null} on a miss. Call {@link #generation()} before reading
+     * the backing store and pass it to {@link #put(String, String, long)} afterwards.
+     */
+    public String get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > System.currentTimeMillis()) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                entries.remove(key);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public void put(String key, String value, long loadedAtGeneration) {
+        synchronized (entries) {
+            if (generation.get() != loadedAtGeneration) {
+                return;
+            }
+            entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * Drops {@code key}; returns whether it was cached.
+     */
+    public boolean invalidate(String key) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            if (entries.remove(key) != null) {
+                invalidations.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0d : (double) hitCount / (hitCount + missCount));
+        stats.put("expirations", expirations.get());
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private static final class Entry {
+
+        private final String value;
+        private final long expiresAt;
+
+        private Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
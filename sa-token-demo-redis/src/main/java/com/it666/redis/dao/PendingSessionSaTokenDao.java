@@ -0,0 +1,40 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.session.SaSession;
+
+/**
+ * Read-your-writes for {@link DirtyTrackingSaSession} ({@code demo.session.dirty-tracking=true}).
+ * <p>
+ * Inside a request the session's changes are only written when the request completes, and a
+ * string-backed dao returns a fresh copy on every read. Without this layer,
+ * {@code session.set("k", v)} followed by {@code StpUtil.getSession().get("k")} would return the
+ * old value. A session with unwritten changes is therefore served from the request's pending
+ * copies. Replacing or deleting the session in storage drops the pending copy.
+ */
+public class PendingSessionSaTokenDao extends DelegatingSaTokenDao {
+
+    public PendingSessionSaTokenDao(SaTokenDao delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public SaSession getSession(String sessionId) {
+        SaSession pending = DirtyTrackingSaSession.pending(sessionId);
+        return pending != null ? pending : delegate.getSession(sessionId);
+    }
+
+    @Override
+    public void setSession(SaSession session, long timeout) {
+        if (DirtyTrackingSaSession.pending(session.getId()) != session) {
+            DirtyTrackingSaSession.discard(session.getId());
+        }
+        delegate.setSession(session, timeout);
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        DirtyTrackingSaSession.discard(sessionId);
+        delegate.deleteSession(sessionId);
+    }
+}
@@ -0,0 +1,66 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Flushes a write batch as a single pipelined {@code MULTI ... EXEC}: one round trip, applied atomically.
+ * <p>
+ * Updates use {@code SET ... XX KEEPTTL}, which needs Redis 6.0 or newer.
+ */
+public class PipelinedWriteBatchFlusher implements WriteBatchFlusher {
+
+    private final StringRedisTemplate redisTemplate;
+
+    public PipelinedWriteBatchFlusher(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void flush(Collection<BufferedWrite> writes) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.multi();
+            for (BufferedWrite write : writes) {
+                apply(connection, write);
+            }
+            connection.exec();
+            return null;
+        });
+    }
+
+    private void apply(RedisConnection connection, BufferedWrite write) {
+        byte[] key = write.getKey().getBytes(StandardCharsets.UTF_8);
+        switch (write.getKind()) {
+            case SET: {
+                byte[] value = write.getValue().getBytes(StandardCharsets.UTF_8);
+                if (write.getTimeout() == SaTokenDao.NEVER_EXPIRE) {
+                    connection.stringCommands().set(key, value);
+                } else {
+                    connection.stringCommands().set(key, value, Expiration.seconds(write.getTimeout()), SetOption.upsert());
+                }
+                break;
+            }
+            case UPDATE:
+                connection.stringCommands().set(key, write.getValue().getBytes(StandardCharsets.UTF_8),
+                        Expiration.keepTtl(), SetOption.ifPresent());
+                break;
+            case DELETE:
+                connection.keyCommands().del(key);
+                break;
+            default:
+                break;
+        }
+        if (write.getExpire() == SaTokenDao.NEVER_EXPIRE) {
+            connection.keyCommands().persist(key);
+        } else if (write.getExpire() != BufferedWrite.NO_EXPIRE_CHANGE) {
+            connection.keyCommands().expire(key, write.getExpire());
+        }
+    }
+}
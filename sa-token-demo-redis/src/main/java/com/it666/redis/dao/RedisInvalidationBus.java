@@ -0,0 +1,142 @@
+package com.it666.redis.dao;
+
+import io.lettuce.core.event.connection.DisconnectedEvent;
+import io.lettuce.core.resource.ClientResources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import reactor.core.Disposable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts changed storage keys to every node over Redis pub/sub.
+ * <p>
+ * Messages are {@code <nodeId>|<key>}; a node ignores its own messages because it has already
+ * applied the change locally. Pub/sub is fire-and-forget, so listeners must still bound staleness
+ * on their own (e.g. with a TTL) in case a message is lost during a reconnect.
+ * <p>
+ * A subscriber that silently reconnects cannot tell that it has missed messages. Listeners that
+ * need to know send a {@link #heartbeat()} (a message of just {@code <nodeId>}, which other nodes
+ * ignore) and check {@link #lastHeardAt()}: if this node's own heartbeats stop coming back, the
+ * subscription has a gap. With Lettuce a reconnect is usually faster than a heartbeat, so
+ * {@link #lastDisconnectAt()} also records every disconnect of the factory's connections.
+ */
+public class RedisInvalidationBus {
+
+    public static final String DEFAULT_CHANNEL = "satoken:demo:invalidate";
+
+    private static final Logger log = LoggerFactory.getLogger(RedisInvalidationBus.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final String nodeId;
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final RedisMessageListenerContainer container;
+
+    private volatile long lastHeardAt;
+    private volatile long lastDisconnectAt;
+    private Disposable disconnects;
+
+    public RedisInvalidationBus(StringRedisTemplate redisTemplate, String channel, String nodeId) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.nodeId = nodeId;
+
+        RedisConnectionFactory connectionFactory = redisTemplate.getConnectionFactory();
+        this.container = new RedisMessageListenerContainer();
+        this.container.setConnectionFactory(connectionFactory);
+        this.container.addMessageListener(this::onMessage, new ChannelTopic(channel));
+        this.container.afterPropertiesSet();
+    }
+
+    public void start() {
+        RedisConnectionFactory connectionFactory = redisTemplate.getConnectionFactory();
+        if (connectionFactory instanceof LettuceConnectionFactory) {
+            ClientResources resources = ((LettuceConnectionFactory) connectionFactory).getClientResources();
+            if (resources != null) {
+                disconnects = resources.eventBus().get()
+                        .filter(event -> event instanceof DisconnectedEvent)
+                        .subscribe(event -> lastDisconnectAt = System.currentTimeMillis());
+            }
+        }
+        container.start();
+    }
+
+    public void stop() {
+        if (disconnects != null) {
+            disconnects.dispose();
+        }
+        try {
+            container.destroy();
+        } catch (Exception ex) {
+            log.warn("failed to stop invalidation listener on {}", channel, ex);
+        }
+    }
+
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Whether the subscription is currently registered. Stays {@code true} across a reconnect that
+     * the client handles on its own; see {@link #lastHeardAt()}.
+     */
+    public boolean isListening() {
+        return container.isListening();
+    }
+
+    /**
+     * When the last message of any node, including this node's heartbeats, arrived; {@code 0} if none has.
+     */
+    public long lastHeardAt() {
+        return lastHeardAt;
+    }
+
+    /**
+     * When a connection of a Lettuce connection factory last dropped; {@code 0} if none has or the
+     * factory is not Lettuce. Any of its connections counts, not only the subscription.
+     */
+    public long lastDisconnectAt() {
+        return lastDisconnectAt;
+    }
+
+    public void heartbeat() {
+        try {
+            redisTemplate.convertAndSend(channel, nodeId);
+        } catch (Exception ex) {
+            // shows up as a gap in lastHeardAt
+            log.debug("failed to publish heartbeat on {}", channel, ex);
+        }
+    }
+
+    public void publish(String key) {
+        try {
+            redisTemplate.convertAndSend(channel, nodeId + "|" + key);
+        } catch (Exception ex) {
+            // The write itself already succeeded; peers fall back to their TTL.
+            log.warn("failed to publish invalidation for {}", key, ex);
+        }
+    }
+
+    private void onMessage(Message message, byte[] pattern) {
+        lastHeardAt = System.currentTimeMillis();
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || nodeId.equals(body.substring(0, separator))) {
+            return;
+        }
+        String key = body.substring(separator + 1);
+        for (Consumer<String> listener : listeners) {
+            listener.accept(key);
+        }
+    }
+}
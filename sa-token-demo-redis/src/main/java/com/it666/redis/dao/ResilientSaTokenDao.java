@@ -0,0 +1,403 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the demo usable while Redis is unreachable ({@code demo.resilience.enabled=true}).
+ * <ul>
+ *     <li>Every value read from or written to storage is mirrored into a bounded local replica
+ *     (a memory dao). Values only seen by a read are kept there for at most {@code readTtlSeconds},
+ *     values written here with their real TTL.</li>
+ *     <li>A {@link CircuitBreaker} watches the storage calls. Failed reads fall back to the replica
+ *     and open the circuit after a few in a row; a failed write opens it at once, because its effect
+ *     now exists only on this node.</li>
+ *     <li>While the circuit is not closed, reads are served by the replica and writes are applied to
+ *     the replica and folded into a journal, one entry per key, bounded by {@code journalMaxEntries}.
+ *     A write to a new key when the journal is full fails.</li>
+ *     <li>A background thread probes storage once the circuit has been open for a while, replays the
+ *     journal in order and only then closes the circuit. TTLs are shortened by the time spent in the
+ *     journal, so a token that expired during the outage is deleted instead of written back; updates
+ *     keep their {@code XX} semantics, so they do not bring back a key another node removed meanwhile.</li>
+ * </ul>
+ * Only connection failures and timeouts count as an outage; an error reply from Redis is rethrown.
+ * Writes made on other nodes during the outage are not visible here until the circuit closes, and
+ * the last replayed write to a key wins.
+ */
+public class ResilientSaTokenDao extends StringRoutingSaTokenDao implements StorageStats {
+
+    private static final Logger log = LoggerFactory.getLogger(ResilientSaTokenDao.class);
+
+    private static final int REPLAY_BATCH = 500;
+
+    private final SaTokenDao replica;
+    private final CircuitBreaker circuit;
+    private final long readTtlSeconds;
+    private final int journalMaxEntries;
+    private final long probeIntervalMillis;
+    private final String probeKey;
+
+    /** guarded by itself; the circuit only closes while holding it with the journal empty */
+    private final Map<String, JournalEntry> journal = new LinkedHashMap<>();
+    private volatile int journalDepth;
+    private volatile int journalMaxDepth;
+    private ScheduledExecutorService recovery;
+
+    private final LongAdder fallbackReads = new LongAdder();
+    private final LongAdder journaledWrites = new LongAdder();
+    private final LongAdder journalRejections = new LongAdder();
+    private final LongAdder replayedWrites = new LongAdder();
+    private final LongAdder discardedWrites = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder probeFailures = new LongAdder();
+
+    /**
+     * @param replica  local dao holding the mirrored values, owned (initialized and destroyed) by this dao
+     * @param probeKey key read to check whether storage is back
+     */
+    public ResilientSaTokenDao(SaTokenDao delegate, SaTokenDao replica, CircuitBreaker circuit, long readTtlSeconds,
+                               int journalMaxEntries, long probeIntervalMillis, String probeKey) {
+        super(delegate);
+        this.replica = replica;
+        this.circuit = circuit;
+        this.readTtlSeconds = readTtlSeconds;
+        this.journalMaxEntries = journalMaxEntries;
+        this.probeIntervalMillis = probeIntervalMillis;
+        this.probeKey = probeKey;
+    }
+
+    @Override
+    public String get(String key) {
+        if (circuit.isClosed()) {
+            try {
+                String value = delegate.get(key);
+                circuit.recordSuccess();
+                mirrorRead(key, value);
+                return value;
+            } catch (RuntimeException ex) {
+                failedRead(ex);
+            }
+        }
+        fallbackReads.increment();
+        return replica.get(key);
+    }
+
+    @Override
+    public long getTimeout(String key) {
+        if (circuit.isClosed()) {
+            try {
+                long timeout = delegate.getTimeout(key);
+                circuit.recordSuccess();
+                if (timeout == SaTokenDao.NOT_VALUE_EXPIRE) {
+                    replica.delete(key);
+                } else {
+                    replica.updateTimeout(key, timeout);
+                }
+                return timeout;
+            } catch (RuntimeException ex) {
+                failedRead(ex);
+            }
+        }
+        fallbackReads.increment();
+        return replica.getTimeout(key);
+    }
+
+    @Override
+    public void set(String key, String value, long timeout) {
+        if (timeout == 0 || timeout <= SaTokenDao.NOT_VALUE_EXPIRE) {
+            return;
+        }
+        write(key, () -> delegate.set(key, value, timeout), () -> replica.set(key, value, timeout),
+                entry -> entry.set(value, timeout));
+    }
+
+    @Override
+    public void update(String key, String value) {
+        write(key, () -> delegate.update(key, value), () -> replica.update(key, value),
+                entry -> entry.write.update(value));
+    }
+
+    @Override
+    public void delete(String key) {
+        write(key, () -> delegate.delete(key), () -> replica.delete(key), entry -> entry.write.delete());
+    }
+
+    @Override
+    public void updateTimeout(String key, long timeout) {
+        write(key, () -> delegate.updateTimeout(key, timeout), () -> replica.updateTimeout(key, timeout),
+                entry -> entry.updateTimeout(timeout));
+    }
+
+    @Override
+    public List<String> searchData(String prefix, String keyword, int start, int size, boolean sortType) {
+        if (circuit.isClosed()) {
+            try {
+                List<String> keys = delegate.searchData(prefix, keyword, start, size, sortType);
+                circuit.recordSuccess();
+                return keys;
+            } catch (RuntimeException ex) {
+                failedRead(ex);
+            }
+        }
+        fallbackReads.increment();
+        return replica.searchData(prefix, keyword, start, size, sortType);
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        replica.init();
+        recovery = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sa-token-resilience");
+            thread.setDaemon(true);
+            return thread;
+        });
+        recovery.scheduleWithFixedDelay(this::recover, probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (recovery != null) {
+            recovery.shutdownNow();
+        }
+        if (journalDepth > 0) {
+            try {
+                replayJournal();
+            } catch (RuntimeException ex) {
+                log.warn("storage still unavailable on shutdown, {} journaled writes are lost", journalDepth, ex);
+            }
+        }
+        replica.destroy();
+        super.destroy();
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("circuit", circuit.stats());
+        stats.put("journalDepth", journalDepth);
+        stats.put("journalMaxDepth", journalMaxDepth);
+        stats.put("journalCapacity", journalMaxEntries);
+        stats.put("journaledWrites", journaledWrites.sum());
+        stats.put("journalRejections", journalRejections.sum());
+        stats.put("replayedWrites", replayedWrites.sum());
+        stats.put("discardedWrites", discardedWrites.sum());
+        stats.put("fallbackReads", fallbackReads.sum());
+        stats.put("probes", probes.sum());
+        stats.put("probeFailures", probeFailures.sum());
+        if (replica instanceof StorageStats) {
+            stats.put("replica", ((StorageStats) replica).storageStats());
+        }
+        return stats;
+    }
+
+    private void write(String key, Runnable storage, Runnable local, Consumer<JournalEntry> journaled) {
+        RuntimeException failure = null;
+        while (true) {
+            if (circuit.isClosed()) {
+                try {
+                    storage.run();
+                    circuit.recordSuccess();
+                    local.run();
+                    return;
+                } catch (RuntimeException ex) {
+                    if (!isOutage(ex)) {
+                        throw ex;
+                    }
+                    failure = ex;
+                    circuit.trip(ex);
+                }
+            }
+            synchronized (journal) {
+                if (circuit.isClosed()) {
+                    // recovered in the meantime: the journal is empty again, write through
+                    continue;
+                }
+                JournalEntry entry = journal.get(key);
+                if (entry == null) {
+                    if (journal.size() >= journalMaxEntries) {
+                        journalRejections.increment();
+                        throw new IllegalStateException("storage is unavailable and the write journal is full ("
+                                + journalMaxEntries + " keys)", failure);
+                    }
+                    entry = new JournalEntry(key);
+                    journal.put(key, entry);
+                    journalDepth = journal.size();
+                    journalMaxDepth = Math.max(journalMaxDepth, journalDepth);
+                }
+                local.run();
+                journaled.accept(entry);
+                journaledWrites.increment();
+                return;
+            }
+        }
+    }
+
+    private void failedRead(RuntimeException ex) {
+        if (!isOutage(ex)) {
+            throw ex;
+        }
+        circuit.recordFailure(ex);
+    }
+
+    /**
+     * Keeps the replica in line with what storage returned.
+     */
+    private void mirrorRead(String key, String value) {
+        if (value == null) {
+            replica.delete(key);
+            return;
+        }
+        String local = replica.get(key);
+        if (local == null) {
+            replica.set(key, value, readTtlSeconds);
+        } else if (!local.equals(value)) {
+            replica.update(key, value);
+        }
+    }
+
+    private void recover() {
+        if (!circuit.tryHalfOpen()) {
+            return;
+        }
+        probes.increment();
+        try {
+            delegate.get(probeKey);
+            replayJournal();
+        } catch (RuntimeException ex) {
+            probeFailures.increment();
+            circuit.reopen(ex);
+            log.debug("storage still unavailable: {}", ex.toString());
+        }
+    }
+
+    /**
+     * Replays the journal in batches and closes the circuit once it is empty. Writers block on the
+     * journal while a batch is replayed, readers keep using the replica.
+     */
+    private void replayJournal() {
+        while (true) {
+            synchronized (journal) {
+                long now = System.currentTimeMillis();
+                Iterator<JournalEntry> entries = journal.values().iterator();
+                for (int i = 0; i < REPLAY_BATCH && entries.hasNext(); i++) {
+                    JournalEntry entry = entries.next();
+                    try {
+                        entry.replay(delegate, now);
+                        replayedWrites.increment();
+                    } catch (RuntimeException ex) {
+                        if (isOutage(ex)) {
+                            throw ex;
+                        }
+                        // rejected by Redis itself: retrying would not help
+                        discardedWrites.increment();
+                        log.warn("discarding journaled write to {}", entry.key, ex);
+                    }
+                    entries.remove();
+                    journalDepth = journal.size();
+                }
+                if (journal.isEmpty()) {
+                    circuit.close();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Connection failures and timeouts; not an error reply, which means Redis is up.
+     */
+    static boolean isOutage(Throwable ex) {
+        boolean outage = false;
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RedisCommandExecutionException) {
+                return false;
+            }
+            if (cause instanceof DataAccessException || cause instanceof RedisException) {
+                outage = true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return outage;
+    }
+
+    /**
+     * The folded writes to one key made while storage was unavailable.
+     */
+    private static final class JournalEntry {
+
+        final String key;
+        final BufferedWrite write;
+        /** when the pending TTL was given; it counts down from there */
+        long timedAt;
+
+        JournalEntry(String key) {
+            this.key = key;
+            this.write = new BufferedWrite(key);
+        }
+
+        void set(String value, long timeout) {
+            write.set(value, timeout);
+            timedAt = System.currentTimeMillis();
+        }
+
+        void updateTimeout(long timeout) {
+            write.updateTimeout(timeout);
+            timedAt = System.currentTimeMillis();
+        }
+
+        void replay(SaTokenDao storage, long now) {
+            long elapsedSeconds = (now - timedAt) / 1000;
+            switch (write.getKind()) {
+                case SET: {
+                    long timeout = remaining(write.getTimeout(), elapsedSeconds);
+                    if (timeout == 0) {
+                        storage.delete(key);
+                        return;
+                    }
+                    storage.set(key, write.getValue(), timeout);
+                    break;
+                }
+                case UPDATE:
+                    storage.update(key, write.getValue());
+                    break;
+                case DELETE:
+                    storage.delete(key);
+                    return;
+                default:
+                    break;
+            }
+            if (write.getExpire() != BufferedWrite.NO_EXPIRE_CHANGE) {
+                long timeout = remaining(write.getExpire(), elapsedSeconds);
+                if (timeout == 0) {
+                    storage.delete(key);
+                } else {
+                    storage.updateTimeout(key, timeout);
+                }
+            }
+        }
+
+        /**
+         * What is left of {@code timeout}; 0 once it has run out.
+         */
+        private static long remaining(long timeout, long elapsedSeconds) {
+            return timeout == SaTokenDao.NEVER_EXPIRE ? timeout : Math.max(0, timeout - elapsedSeconds);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.dao.SaTokenDaoForRedisTemplate;
+import cn.dev33.satoken.session.SaSession;
+import cn.dev33.satoken.session.SaTerminalInfo;
+import cn.dev33.satoken.strategy.SaStrategy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis dao that stores every SaSession as a Redis hash ({@code demo.storage-mode=redis-hash}).
+ * <p>
+ * Session metadata lives in {@code m:*} fields and attributes in {@code d:<key>} fields, so a
+ * {@link FieldSaSession#set(String, Object)} is a single HSET of one field instead of a rewrite of
+ * the whole serialized session, and concurrent writers on different nodes only conflict on the
+ * same attribute. Tokens and other plain values keep using string keys.
+ * <p>
+ * Field values carry a one-char type prefix; strings, longs, ints and booleans are stored as
+ * plain text and everything else goes through the configured serializer.
+ */
+public class SaTokenDaoForRedisHash extends SaTokenDaoForRedisTemplate implements SessionFieldStore {
+
+    static final String META = "m:";
+    static final String DATA = "d:";
+
+    private static final String F_ID = META + "id";
+    private static final String F_TYPE = META + "type";
+    private static final String F_LOGIN_TYPE = META + "loginType";
+    private static final String F_LOGIN_ID = META + "loginId";
+    private static final String F_TOKEN = META + "token";
+    private static final String F_HISTORY_TERMINAL_COUNT = META + "historyTerminalCount";
+    private static final String F_CREATE_TIME = META + "createTime";
+    private static final String F_TERMINAL_LIST = META + "terminalList";
+
+    /**
+     * HSET only if the session still exists, so a write racing a logout cannot resurrect a
+     * session without TTL or metadata.
+     */
+    private static final RedisScript<Long> SET_FIELD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end "
+                    + "return redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])", Long.class);
+
+    /**
+     * Replaces all fields of an existing session and keeps its remaining TTL.
+     */
+    private static final RedisScript<Long> REPLACE_SCRIPT = new DefaultRedisScript<>(
+            "local ttl = redis.call('PTTL', KEYS[1]) "
+                    + "if ttl == -2 then return 0 end "
+                    + "redis.call('DEL', KEYS[1]) "
+                    + "redis.call('HSET', KEYS[1], unpack(ARGV)) "
+                    + "if ttl > 0 then redis.call('PEXPIRE', KEYS[1], ttl) end "
+                    + "return 1", Long.class);
+
+    @Override
+    public SaSession getSession(String sessionId) {
+        Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(sessionId);
+        if (fields.isEmpty()) {
+            return null;
+        }
+        return decodeSession(fields);
+    }
+
+    @Override
+    public void setSession(SaSession session, long timeout) {
+        if (timeout == 0 || timeout <= SaTokenDao.NOT_VALUE_EXPIRE) {
+            return;
+        }
+        String key = session.getId();
+        Map<String, String> fields = encodeSession(session);
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                // operations is stringRedisTemplate itself, so keys and values are Strings
+                @SuppressWarnings("unchecked")
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.multi();
+                ops.delete(key);
+                ops.opsForHash().putAll(key, fields);
+                if (timeout != SaTokenDao.NEVER_EXPIRE) {
+                    ops.expire(key, timeout, TimeUnit.SECONDS);
+                }
+                ops.exec();
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void updateSession(SaSession session) {
+        Map<String, String> fields = encodeSession(session);
+        List<String> args = new ArrayList<>(fields.size() * 2);
+        fields.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        stringRedisTemplate.execute(REPLACE_SCRIPT, Collections.singletonList(session.getId()), args.toArray());
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        delete(sessionId);
+    }
+
+    @Override
+    public long getSessionTimeout(String sessionId) {
+        return getTimeout(sessionId);
+    }
+
+    @Override
+    public void updateSessionTimeout(String sessionId, long timeout) {
+        if (timeout == SaTokenDao.NEVER_EXPIRE) {
+            stringRedisTemplate.persist(sessionId);
+            return;
+        }
+        stringRedisTemplate.expire(sessionId, timeout, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void setSessionField(String sessionId, String key, Object value) {
+        stringRedisTemplate.execute(SET_FIELD_SCRIPT, Collections.singletonList(sessionId), DATA + key, encodeValue(value));
+    }
+
+    @Override
+    public void deleteSessionField(String sessionId, String key) {
+        stringRedisTemplate.opsForHash().delete(sessionId, DATA + key);
+    }
+
+    // ---------------------------------------------------------------- encoding
+
+    private Map<String, String> encodeSession(SaSession session) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(F_ID, encodeValue(session.getId()));
+        putIfNotNull(fields, F_TYPE, session.getType());
+        putIfNotNull(fields, F_LOGIN_TYPE, session.getLoginType());
+        putIfNotNull(fields, F_LOGIN_ID, session.getLoginId());
+        putIfNotNull(fields, F_TOKEN, session.getToken());
+        fields.put(F_HISTORY_TERMINAL_COUNT, encodeValue(session.getHistoryTerminalCount()));
+        fields.put(F_CREATE_TIME, encodeValue(session.getCreateTime()));
+        fields.put(F_TERMINAL_LIST, encodeValue(session.terminalListCopy()));
+        session.getDataMap().forEach((key, value) -> fields.put(DATA + key, encodeValue(value)));
+        return fields;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SaSession decodeSession(Map<Object, Object> fields) {
+        SaSession session;
+        try {
+            session = SaStrategy.instance.sessionClassType.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+        for (Map.Entry<Object, Object> entry : fields.entrySet()) {
+            String field = (String) entry.getKey();
+            Object value = decodeValue((String) entry.getValue());
+            if (field.startsWith(DATA)) {
+                if (value != null) {
+                    session.getDataMap().put(field.substring(DATA.length()), value);
+                }
+                continue;
+            }
+            switch (field) {
+                case F_ID:
+                    session.setId((String) value);
+                    break;
+                case F_TYPE:
+                    session.setType((String) value);
+                    break;
+                case F_LOGIN_TYPE:
+                    session.setLoginType((String) value);
+                    break;
+                case F_LOGIN_ID:
+                    session.setLoginId(value);
+                    break;
+                case F_TOKEN:
+                    session.setToken((String) value);
+                    break;
+                case F_HISTORY_TERMINAL_COUNT:
+                    session.setHistoryTerminalCount((Integer) value);
+                    break;
+                case F_CREATE_TIME:
+                    session.setCreateTime((Long) value);
+                    break;
+                case F_TERMINAL_LIST:
+                    if (value != null) {
+                        session.getTerminalList().addAll((List<SaTerminalInfo>) value);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return session;
+    }
+
+    private static void putIfNotNull(Map<String, String> fields, String field, Object value) {
+        if (value != null) {
+            fields.put(field, encodeValue(value));
+        }
+    }
+
+    static String encodeValue(Object value) {
+        if (value instanceof String) {
+            return "s" + value;
+        }
+        if (value instanceof Long) {
+            return "l" + value;
+        }
+        if (value instanceof Integer) {
+            return "i" + value;
+        }
+        if (value instanceof Boolean) {
+            return "b" + value;
+        }
+        return "o" + SaManager.getSaSerializerTemplate().objectToString(value);
+    }
+
+    static Object decodeValue(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return null;
+        }
+        String body = encoded.substring(1);
+        switch (encoded.charAt(0)) {
+            case 's':
+                return body;
+            case 'l':
+                return Long.parseLong(body);
+            case 'i':
+                return Integer.parseInt(body);
+            case 'b':
+                return Boolean.parseBoolean(body);
+            default:
+                return SaManager.getSaSerializerTemplate().stringToObject(body);
+        }
+    }
+}
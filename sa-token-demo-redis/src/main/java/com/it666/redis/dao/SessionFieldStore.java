@@ -0,0 +1,35 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+
+/**
+ * Optional dao capability: persist a single session attribute instead of rewriting the whole session.
+ */
+public interface SessionFieldStore {
+
+    void setSessionField(String sessionId, String key, Object value);
+
+    void deleteSessionField(String sessionId, String key);
+
+    /**
+     * Whether single fields can actually be stored. A decorator that only forwards field writes
+     * answers for the layers below it.
+     */
+    default boolean storesSessionFields() {
+        return true;
+    }
+
+    /**
+     * Returns the outermost layer of the decorator chain that can store single fields, or {@code null}.
+     * Decorators that forward field writes are returned too, so they see the writes they wrap.
+     */
+    static SessionFieldStore find(SaTokenDao dao) {
+        while (dao != null) {
+            if (dao instanceof SessionFieldStore && ((SessionFieldStore) dao).storesSessionFields()) {
+                return (SessionFieldStore) dao;
+            }
+            dao = dao instanceof DelegatingSaTokenDao ? ((DelegatingSaTokenDao) dao).getDelegate() : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,28 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Implemented by storage components that expose counters on {@code /redis-demo/storage}.
+ */
+public interface StorageStats {
+
+    Map<String, Object> storageStats();
+
+    /**
+     * Walks a decorator chain from the outermost dao inwards and collects the stats of every layer.
+     */
+    static Map<String, Object> collect(SaTokenDao dao) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        while (dao != null) {
+            if (dao instanceof StorageStats) {
+                stats.put(dao.getClass().getSimpleName(), ((StorageStats) dao).storageStats());
+            }
+            dao = dao instanceof DelegatingSaTokenDao ? ((DelegatingSaTokenDao) dao).getDelegate() : null;
+        }
+        return stats;
+    }
+}
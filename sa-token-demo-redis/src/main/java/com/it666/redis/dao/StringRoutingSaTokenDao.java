@@ -0,0 +1,83 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.session.SaSession;
+import cn.dev33.satoken.strategy.SaStrategy;
+
+/**
+ * Decorator for string-backed (Redis) daos: object and session operations are serialized and
+ * routed through this layer's own string operations, so subclasses only need to intercept
+ * {@code get/set/update/delete/getTimeout/updateTimeout}.
+ */
+public abstract class StringRoutingSaTokenDao extends DelegatingSaTokenDao {
+
+    protected StringRoutingSaTokenDao(SaTokenDao delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public Object getObject(String key) {
+        return SaManager.getSaSerializerTemplate().stringToObject(get(key));
+    }
+
+    @Override
+    public <T> T getObject(String key, Class<T> classType) {
+        return SaManager.getSaSerializerTemplate().stringToObject(get(key), classType);
+    }
+
+    @Override
+    public void setObject(String key, Object object, long timeout) {
+        set(key, SaManager.getSaSerializerTemplate().objectToString(object), timeout);
+    }
+
+    @Override
+    public void updateObject(String key, Object object) {
+        update(key, SaManager.getSaSerializerTemplate().objectToString(object));
+    }
+
+    @Override
+    public void deleteObject(String key) {
+        delete(key);
+    }
+
+    @Override
+    public long getObjectTimeout(String key) {
+        return getTimeout(key);
+    }
+
+    @Override
+    public void updateObjectTimeout(String key, long timeout) {
+        updateTimeout(key, timeout);
+    }
+
+    @Override
+    public SaSession getSession(String sessionId) {
+        return getObject(sessionId, SaStrategy.instance.sessionClassType);
+    }
+
+    @Override
+    public void setSession(SaSession session, long timeout) {
+        setObject(session.getId(), session, timeout);
+    }
+
+    @Override
+    public void updateSession(SaSession session) {
+        updateObject(session.getId(), session);
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        delete(sessionId);
+    }
+
+    @Override
+    public long getSessionTimeout(String sessionId) {
+        return getTimeout(sessionId);
+    }
+
+    @Override
+    public void updateSessionTimeout(String sessionId, long timeout) {
+        updateTimeout(sessionId, timeout);
+    }
+}
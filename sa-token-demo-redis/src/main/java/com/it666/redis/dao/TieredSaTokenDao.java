@@ -0,0 +1,102 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two-level dao: a bounded in-process {@link NearCache} (L1) in front of the Redis dao (L2).
+ * <p>
+ * Everything is cached at the serialized-string level, so sessions and objects handed out are
+ * always fresh, unshared instances.
+ * Every local write, timeout changes included, invalidates L1 and is broadcast on the {@link RedisInvalidationBus} so that
+ * the other nodes drop their copy as well.
+ */
+public class TieredSaTokenDao extends StringRoutingSaTokenDao implements StorageStats {
+
+    private final NearCache nearCache;
+    private final RedisInvalidationBus invalidationBus;
+
+    public TieredSaTokenDao(SaTokenDao redisDao, NearCache nearCache, RedisInvalidationBus invalidationBus) {
+        super(redisDao);
+        this.nearCache = nearCache;
+        this.invalidationBus = invalidationBus;
+        invalidationBus.addListener(nearCache::invalidate);
+    }
+
+    @Override
+    public String get(String key) {
+        String value = nearCache.get(key);
+        if (value != null) {
+            return value;
+        }
+        long generation = nearCache.generation();
+        value = delegate.get(key);
+        if (value != null) {
+            nearCache.put(key, value, generation);
+        }
+        return value;
+    }
+
+    @Override
+    public void set(String key, String value, long timeout) {
+        delegate.set(key, value, timeout);
+        invalidate(key);
+    }
+
+    @Override
+    public void update(String key, String value) {
+        delegate.update(key, value);
+        invalidate(key);
+    }
+
+    @Override
+    public void delete(String key) {
+        delegate.delete(key);
+        invalidate(key);
+    }
+
+    /**
+     * A shortened timeout must not outlive itself in L1, so a timeout change is a write too.
+     */
+    @Override
+    public void updateTimeout(String key, long timeout) {
+        delegate.updateTimeout(key, timeout);
+        invalidate(key);
+    }
+
+    /**
+     * Applies a change another node made to {@code key}: drops the L1 copy and, if there was one,
+     * loads the new value right away so the next read here is still a hit. Not broadcast.
+     */
+    public void refresh(String key) {
+        if (!nearCache.invalidate(key)) {
+            return;
+        }
+        long generation = nearCache.generation();
+        String value = delegate.get(key);
+        if (value != null) {
+            nearCache.put(key, value, generation);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        invalidationBus.stop();
+        nearCache.invalidateAll();
+        super.destroy();
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("l1", nearCache.stats());
+        return stats;
+    }
+
+    private void invalidate(String key) {
+        nearCache.invalidate(key);
+        invalidationBus.publish(key);
+    }
+}
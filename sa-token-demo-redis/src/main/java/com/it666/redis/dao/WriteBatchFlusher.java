@@ -0,0 +1,12 @@
+package com.it666.redis.dao;
+
+import java.util.Collection;
+
+/**
+ * Sends the writes collected by {@link WriteBehindSaTokenDao} to storage in one round trip.
+ */
+@FunctionalInterface
+public interface WriteBatchFlusher {
+
+    void flush(Collection<BufferedWrite> writes);
+}
@@ -0,0 +1,172 @@
+package com.it666.redis.dao;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request-scoped write-behind decorator ({@code demo.storage-mode=write-behind}).
+ * <p>
+ * Between {@link #begin()} and {@link #complete()} (driven by {@code SessionWriteBufferFilter})
+ * every string write is folded into a per-thread buffer instead of hitting Redis, reads of a
+ * buffered key see the buffered value, and {@link #complete()} sends the whole batch through the
+ * {@link WriteBatchFlusher} in one round trip. Outside a request the dao writes through.
+ */
+public class WriteBehindSaTokenDao extends StringRoutingSaTokenDao implements StorageStats {
+
+    private final ThreadLocal<Map<String, BufferedWrite>> buffer = new ThreadLocal<>();
+    private final WriteBatchFlusher flusher;
+
+    private final AtomicLong bufferedOps = new AtomicLong();
+    private final AtomicLong flushedCommands = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    public WriteBehindSaTokenDao(SaTokenDao delegate, WriteBatchFlusher flusher) {
+        super(delegate);
+        this.flusher = flusher;
+    }
+
+    public boolean isBuffering() {
+        return buffer.get() != null;
+    }
+
+    public void begin() {
+        buffer.set(new LinkedHashMap<>());
+    }
+
+    /**
+     * Ends the current buffer and flushes it. A failed flush is rethrown: the writes are lost,
+     * exactly as if the equivalent write-through command had failed.
+     */
+    public void complete() {
+        Map<String, BufferedWrite> writes = buffer.get();
+        buffer.remove();
+        flush(writes);
+    }
+
+    @Override
+    public String get(String key) {
+        BufferedWrite write = pending(key);
+        if (write == null) {
+            return delegate.get(key);
+        }
+        return write.read(write.dependsOnStorage() ? delegate.get(key) : null);
+    }
+
+    @Override
+    public void set(String key, String value, long timeout) {
+        if (timeout == 0 || timeout <= SaTokenDao.NOT_VALUE_EXPIRE) {
+            return;
+        }
+        BufferedWrite write = buffered(key);
+        if (write == null) {
+            delegate.set(key, value, timeout);
+        } else {
+            write.set(value, timeout);
+        }
+    }
+
+    @Override
+    public void update(String key, String value) {
+        BufferedWrite write = buffered(key);
+        if (write == null) {
+            delegate.update(key, value);
+        } else {
+            write.update(value);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        BufferedWrite write = buffered(key);
+        if (write == null) {
+            delegate.delete(key);
+        } else {
+            write.delete();
+        }
+    }
+
+    @Override
+    public long getTimeout(String key) {
+        BufferedWrite write = pending(key);
+        if (write == null) {
+            return delegate.getTimeout(key);
+        }
+        return write.readTimeout(write.dependsOnStorage() ? delegate.getTimeout(key) : SaTokenDao.NOT_VALUE_EXPIRE);
+    }
+
+    @Override
+    public void updateTimeout(String key, long timeout) {
+        BufferedWrite write = buffered(key);
+        if (write == null) {
+            delegate.updateTimeout(key, timeout);
+        } else {
+            write.updateTimeout(timeout);
+        }
+    }
+
+    @Override
+    public List<String> searchData(String prefix, String keyword, int start, int size, boolean sortType) {
+        // a key scan cannot see buffered keys, so publish them first
+        Map<String, BufferedWrite> writes = buffer.get();
+        if (writes != null && !writes.isEmpty()) {
+            flush(writes);
+            writes.clear();
+        }
+        return delegate.searchData(prefix, keyword, start, size, sortType);
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bufferedOps", bufferedOps.get());
+        stats.put("flushes", flushes.get());
+        stats.put("flushedCommands", flushedCommands.get());
+        stats.put("flushFailures", flushFailures.get());
+        return stats;
+    }
+
+    private BufferedWrite pending(String key) {
+        Map<String, BufferedWrite> writes = buffer.get();
+        return writes == null ? null : writes.get(key);
+    }
+
+    private BufferedWrite buffered(String key) {
+        Map<String, BufferedWrite> writes = buffer.get();
+        if (writes == null) {
+            return null;
+        }
+        bufferedOps.incrementAndGet();
+        return writes.computeIfAbsent(key, BufferedWrite::new);
+    }
+
+    private void flush(Map<String, BufferedWrite> writes) {
+        if (writes == null || writes.isEmpty()) {
+            return;
+        }
+        List<BufferedWrite> batch = new ArrayList<>(writes.size());
+        int commands = 0;
+        for (BufferedWrite write : writes.values()) {
+            if (write.commandCount() > 0) {
+                batch.add(write);
+                commands += write.commandCount();
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flusher.flush(batch);
+        } catch (RuntimeException ex) {
+            flushFailures.incrementAndGet();
+            throw ex;
+        }
+        flushes.incrementAndGet();
+        flushedCommands.addAndGet(commands);
+    }
+}
@@ -0,0 +1,99 @@
+package com.it666.redis.feed;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One entry of the {@link SessionChangeFeed}: what happened, to which account, and the storage keys
+ * it changed. Stored in the stream as flat string fields.
+ */
+public final class ChangeEvent {
+
+    public enum Type {
+        LOGIN,
+        LOGOUT,
+        KICKOUT,
+        REPLACED,
+        SESSION_UPDATE,
+        SESSION_DELETE
+    }
+
+    private final String id;
+    private final String node;
+    private final Type type;
+    private final String loginType;
+    private final String loginId;
+    private final List<String> keys;
+
+    ChangeEvent(String id, String node, Type type, String loginType, String loginId, List<String> keys) {
+        this.id = id;
+        this.node = node;
+        this.type = type;
+        this.loginType = loginType;
+        this.loginId = loginId;
+        this.keys = keys;
+    }
+
+    /**
+     * Stream entry id, {@code null} before the event was published.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * {@code demo.node-id} of the node that made the change.
+     */
+    public String getNode() {
+        return node;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getLoginType() {
+        return loginType;
+    }
+
+    /**
+     * {@code null} for changes not tied to an account, such as token sessions.
+     */
+    public String getLoginId() {
+        return loginId;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    Map<String, String> toFields() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("node", node);
+        fields.put("type", type.name());
+        if (loginType != null) {
+            fields.put("loginType", loginType);
+        }
+        if (loginId != null) {
+            fields.put("loginId", loginId);
+        }
+        // storage keys never contain spaces
+        fields.put("keys", String.join(" ", keys));
+        return fields;
+    }
+
+    static ChangeEvent fromFields(String id, Map<?, ?> fields) {
+        String keys = (String) fields.get("keys");
+        return new ChangeEvent(id, (String) fields.get("node"), Type.valueOf((String) fields.get("type")),
+                (String) fields.get("loginType"), (String) fields.get("loginId"),
+                keys == null || keys.isEmpty() ? Collections.emptyList() : Arrays.asList(keys.split(" ")));
+    }
+
+    @Override
+    public String toString() {
+        return id + " " + type + " " + loginType + ":" + loginId + " from " + node + " " + keys;
+    }
+}
@@ -0,0 +1,52 @@
+package com.it666.redis.feed;
+
+import cn.dev33.satoken.SaManager;
+import cn.dev33.satoken.listener.SaTokenListenerForSimple;
+import cn.dev33.satoken.stp.StpLogic;
+import cn.dev33.satoken.stp.parameter.SaLoginParameter;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Publishes logins, logouts, kickouts and replaced logins to the {@link SessionChangeFeed}, with
+ * the token keys they changed. The account session changes that come with them are published by
+ * {@link ChangeFeedSaTokenDao}, in the same partition because it is chosen by login id.
+ */
+public class ChangeFeedListener extends SaTokenListenerForSimple {
+
+    private final SessionChangeFeed feed;
+
+    public ChangeFeedListener(SessionChangeFeed feed) {
+        this.feed = feed;
+    }
+
+    @Override
+    public void doLogin(String loginType, Object loginId, String tokenValue, SaLoginParameter loginParameter) {
+        feed.publish(ChangeEvent.Type.LOGIN, loginType, loginId,
+                Collections.singletonList(SaManager.getStpLogic(loginType).splicingKeyTokenValue(tokenValue)));
+    }
+
+    @Override
+    public void doLogout(String loginType, Object loginId, String tokenValue) {
+        tokenEnded(ChangeEvent.Type.LOGOUT, loginType, loginId, tokenValue);
+    }
+
+    @Override
+    public void doKickout(String loginType, Object loginId, String tokenValue) {
+        tokenEnded(ChangeEvent.Type.KICKOUT, loginType, loginId, tokenValue);
+    }
+
+    @Override
+    public void doReplaced(String loginType, Object loginId, String tokenValue) {
+        tokenEnded(ChangeEvent.Type.REPLACED, loginType, loginId, tokenValue);
+    }
+
+    private void tokenEnded(ChangeEvent.Type type, String loginType, Object loginId, String tokenValue) {
+        StpLogic stpLogic = SaManager.getStpLogic(loginType);
+        feed.publish(type, loginType, loginId, Arrays.asList(
+                stpLogic.splicingKeyTokenValue(tokenValue),
+                stpLogic.splicingKeyLastActiveTime(tokenValue),
+                stpLogic.splicingKeyTokenSession(tokenValue)));
+    }
+}
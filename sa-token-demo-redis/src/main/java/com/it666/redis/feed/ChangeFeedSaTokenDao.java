@@ -0,0 +1,129 @@
+package com.it666.redis.feed;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.exception.NotLoginException;
+import cn.dev33.satoken.session.SaSession;
+import com.it666.redis.dao.DelegatingSaTokenDao;
+import com.it666.redis.dao.SessionFieldStore;
+import com.it666.redis.dao.StorageStats;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Publishes every session write and delete made through this node to the {@link SessionChangeFeed},
+ * after storage has accepted it. Single-field writes ({@code redis-hash} mode) are forwarded to the
+ * {@link SessionFieldStore} below and published as a session update as well. Logins, logouts and kickouts are published by {@link ChangeFeedListener}.
+ * Also owns the feed's lifecycle.
+ */
+public class ChangeFeedSaTokenDao extends DelegatingSaTokenDao implements SessionFieldStore, StorageStats {
+
+    private static final String SESSION_KIND = "session:";
+    private static final String TOKEN_SESSION_KIND = "token-session:";
+
+    private final SessionChangeFeed feed;
+
+    public ChangeFeedSaTokenDao(SaTokenDao delegate, SessionChangeFeed feed) {
+        super(delegate);
+        this.feed = feed;
+    }
+
+    @Override
+    public void setSession(SaSession session, long timeout) {
+        Owner owner = owner(session.getId());
+        delegate.setSession(session, timeout);
+        published(ChangeEvent.Type.SESSION_UPDATE, owner, session.getId());
+    }
+
+    @Override
+    public void updateSession(SaSession session) {
+        Owner owner = owner(session.getId());
+        delegate.updateSession(session);
+        published(ChangeEvent.Type.SESSION_UPDATE, owner, session.getId());
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        // resolved first: deleting a token session usually goes along with deleting its token mapping
+        Owner owner = owner(sessionId);
+        delegate.deleteSession(sessionId);
+        published(ChangeEvent.Type.SESSION_DELETE, owner, sessionId);
+    }
+
+    @Override
+    public boolean storesSessionFields() {
+        return SessionFieldStore.find(delegate) != null;
+    }
+
+    @Override
+    public void setSessionField(String sessionId, String key, Object value) {
+        Owner owner = owner(sessionId);
+        SessionFieldStore.find(delegate).setSessionField(sessionId, key, value);
+        published(ChangeEvent.Type.SESSION_UPDATE, owner, sessionId);
+    }
+
+    @Override
+    public void deleteSessionField(String sessionId, String key) {
+        Owner owner = owner(sessionId);
+        SessionFieldStore.find(delegate).deleteSessionField(sessionId, key);
+        published(ChangeEvent.Type.SESSION_UPDATE, owner, sessionId);
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        feed.start();
+    }
+
+    @Override
+    public void destroy() {
+        feed.stop();
+        super.destroy();
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        return feed.stats();
+    }
+
+    private void published(ChangeEvent.Type type, Owner owner, String sessionId) {
+        feed.publish(type, owner.loginType, owner.loginId, Collections.singletonList(sessionId));
+    }
+
+    /**
+     * Session ids are {@code <token-name>:<login-type>:session:<login-id>} for account sessions and
+     * {@code <token-name>:<login-type>:token-session:<token>} for token sessions. A token session's
+     * login id is looked up in the token mapping ({@code <token-name>:<login-type>:token:<token>}),
+     * so its events land in the same partition as that account's logout or kickout. Without a valid
+     * mapping the event is partitioned by the session id.
+     */
+    private Owner owner(String sessionId) {
+        int first = sessionId.indexOf(':');
+        int second = first < 0 ? -1 : sessionId.indexOf(':', first + 1);
+        if (second < 0) {
+            return new Owner(null, null);
+        }
+        String loginType = sessionId.substring(first + 1, second);
+        if (sessionId.startsWith(SESSION_KIND, second + 1)) {
+            return new Owner(loginType, sessionId.substring(second + 1 + SESSION_KIND.length()));
+        }
+        if (sessionId.startsWith(TOKEN_SESSION_KIND, second + 1)) {
+            String token = sessionId.substring(second + 1 + TOKEN_SESSION_KIND.length());
+            String loginId = delegate.get(sessionId.substring(0, second) + ":token:" + token);
+            if (loginId != null && !NotLoginException.ABNORMAL_LIST.contains(loginId)) {
+                return new Owner(loginType, loginId);
+            }
+        }
+        return new Owner(loginType, null);
+    }
+
+    private static final class Owner {
+        final String loginType;
+        final String loginId;
+
+        Owner(String loginType, String loginId) {
+            this.loginType = loginType;
+            this.loginId = loginId;
+        }
+    }
+}
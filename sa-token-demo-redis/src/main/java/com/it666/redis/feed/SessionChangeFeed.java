@@ -0,0 +1,257 @@
+package com.it666.redis.feed;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Durable change feed between nodes on Redis Streams ({@code demo.change-feed.enabled=true}).
+ * <p>
+ * Events go to one of {@code partitions} streams chosen by login id, so all events of one account
+ * are in a single stream in the order Redis accepted them. Every node reads every partition through
+ * its own consumer group (named after the node), one thread per partition, and hands the events of
+ * other nodes to its listeners in stream order. An entry is acknowledged once the listeners have run.
+ * <p>
+ * The group keeps the last delivered id in Redis, so a restarted node resumes where it stopped:
+ * it first re-reads the entries it had been given but not acknowledged, then continues with new
+ * ones. A node joining for the first time starts at the end of the streams. Streams are trimmed to
+ * about {@code maxLength} entries each; a node that was down for longer than that misses the oldest
+ * events, which its near cache TTL covers.
+ */
+public class SessionChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionChangeFeed.class);
+
+    private static final int BATCH = 100;
+    private static final Duration POLL = Duration.ofSeconds(2);
+    private static final long ERROR_BACKOFF_MILLIS = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final String streamPrefix;
+    private final int partitions;
+    private final long maxLength;
+    private final String nodeId;
+    private final List<Consumer<ChangeEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private ExecutorService consumers;
+    private final AtomicReferenceArray<String> lastIds;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder publishFailures = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder redelivered = new LongAdder();
+    private final LongAdder ownSkipped = new LongAdder();
+    private final LongAdder listenerFailures = new LongAdder();
+    private final LongAdder readFailures = new LongAdder();
+
+    public SessionChangeFeed(StringRedisTemplate redisTemplate, String streamPrefix, int partitions, long maxLength,
+                             String nodeId) {
+        this.redisTemplate = redisTemplate;
+        this.streamPrefix = streamPrefix;
+        this.partitions = Math.max(1, partitions);
+        this.maxLength = maxLength;
+        this.nodeId = nodeId;
+        this.lastIds = new AtomicReferenceArray<>(this.partitions);
+    }
+
+    public void addListener(Consumer<ChangeEvent> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Appends an event. Like the pub/sub invalidations, a failure is logged and not rethrown: the
+     * change itself has already been made.
+     */
+    public void publish(ChangeEvent.Type type, String loginType, Object loginId, List<String> keys) {
+        String id = loginId == null ? null : String.valueOf(loginId);
+        ChangeEvent event = new ChangeEvent(null, nodeId, type, loginType, id, keys);
+        byte[] stream = bytes(stream(partition(id != null ? id : keys.get(0))));
+        Map<byte[], byte[]> body = new LinkedHashMap<>();
+        event.toFields().forEach((field, value) -> body.put(bytes(field), bytes(value)));
+        try {
+            redisTemplate.execute((RedisCallback<RecordId>) connection -> connection.streamCommands().xAdd(
+                    StreamRecords.newRecord().in(stream).ofMap(body),
+                    XAddOptions.maxlen(maxLength).approximateTrimming(true)));
+            published.increment();
+        } catch (RuntimeException ex) {
+            publishFailures.increment();
+            log.warn("failed to publish {} event for {}", type, id != null ? id : keys, ex);
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        for (int partition = 0; partition < partitions; partition++) {
+            createGroup(stream(partition));
+        }
+        running = true;
+        consumers = Executors.newFixedThreadPool(partitions, runnable -> {
+            Thread thread = new Thread(runnable, "sa-token-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int partition = 0; partition < partitions; partition++) {
+            int p = partition;
+            consumers.execute(() -> consume(p));
+        }
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (consumers != null) {
+            consumers.shutdownNow();
+            try {
+                consumers.awaitTermination(POLL.toMillis() * 2, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("streams", streamPrefix + ":{0.." + (partitions - 1) + "}");
+        stats.put("group", nodeId);
+        stats.put("published", published.sum());
+        stats.put("publishFailures", publishFailures.sum());
+        stats.put("received", received.sum());
+        stats.put("redelivered", redelivered.sum());
+        stats.put("ownSkipped", ownSkipped.sum());
+        stats.put("listenerFailures", listenerFailures.sum());
+        stats.put("readFailures", readFailures.sum());
+        Map<String, Object> last = new LinkedHashMap<>();
+        for (int i = 0; i < partitions; i++) {
+            last.put(String.valueOf(i), lastIds.get(i));
+        }
+        stats.put("lastIds", last);
+        return stats;
+    }
+
+    private void consume(int partition) {
+        String stream = stream(partition);
+        org.springframework.data.redis.connection.stream.Consumer consumer =
+                org.springframework.data.redis.connection.stream.Consumer.from(nodeId, nodeId);
+        // entries delivered before a restart or a read error but never acknowledged come first
+        boolean backlog = true;
+        while (running) {
+            try {
+                List<MapRecord<String, Object, Object>> records = backlog
+                        ? read(consumer, StreamReadOptions.empty().count(BATCH),
+                                StreamOffset.create(stream, ReadOffset.from("0")))
+                        : read(consumer, StreamReadOptions.empty().count(BATCH).block(POLL),
+                                StreamOffset.create(stream, ReadOffset.lastConsumed()));
+                if (records == null || records.isEmpty()) {
+                    backlog = false;
+                    continue;
+                }
+                RecordId[] ids = new RecordId[records.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    MapRecord<String, Object, Object> record = records.get(i);
+                    ids[i] = record.getId();
+                    if (backlog) {
+                        redelivered.increment();
+                    }
+                    dispatch(ChangeEvent.fromFields(record.getId().getValue(), record.getValue()));
+                }
+                redisTemplate.opsForStream().acknowledge(stream, nodeId, ids);
+                lastIds.set(partition, ids[ids.length - 1].getValue());
+            } catch (RuntimeException ex) {
+                if (!running) {
+                    return;
+                }
+                readFailures.increment();
+                log.warn("change feed read from {} failed, retrying", stream, ex);
+                backlog = true;
+                try {
+                    Thread.sleep(ERROR_BACKOFF_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(ChangeEvent event) {
+        received.increment();
+        if (nodeId.equals(event.getNode())) {
+            // applied locally when it was made
+            ownSkipped.increment();
+            return;
+        }
+        for (Consumer<ChangeEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException ex) {
+                // not retried: one failing listener must not hold up the partition
+                listenerFailures.increment();
+                log.warn("change feed listener failed on {}", event, ex);
+            }
+        }
+    }
+
+    private void createGroup(String stream) {
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(bytes(stream), nodeId, ReadOffset.latest(), true));
+        } catch (RuntimeException ex) {
+            if (!isBusyGroup(ex)) {
+                throw ex;
+            }
+            // the group survived a restart: resume from its last delivered id
+        }
+    }
+
+    private static boolean isBusyGroup(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("BUSYGROUP")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads one stream; {@code read} only takes offsets as generic varargs.
+     */
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> read(org.springframework.data.redis.connection.stream.Consumer consumer,
+                                                         StreamReadOptions options, StreamOffset<String> offset) {
+        return redisTemplate.opsForStream().read(consumer, options, offset);
+    }
+
+    private int partition(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % partitions;
+    }
+
+    private String stream(int partition) {
+        return streamPrefix + ":" + partition;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+package com.it666.redis.filter;
+
+import cn.dev33.satoken.strategy.SaStrategy;
+import com.it666.redis.dao.DirtyTrackingSaSession;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Collects the session changes of each request and writes them when the request completes.
+ * Does nothing unless sessions are {@link DirtyTrackingSaSession}s.
+ * <p>
+ * Like {@link SessionWriteBufferFilter}, the response body is held back until the changes are
+ * written, and a failed write replaces the response with an error.
+ */
+public class SessionDeltaFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!DirtyTrackingSaSession.class.isAssignableFrom(SaStrategy.instance.sessionClassType)
+                || DirtyTrackingSaSession.isDeferring()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // hold the body until the deltas are written, unless SessionWriteBufferFilter already does
+        ContentCachingResponseWrapper held = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class) == null
+                ? new ContentCachingResponseWrapper(response) : null;
+        DirtyTrackingSaSession.begin();
+        try {
+            chain.doFilter(request, held != null ? held : response);
+        } finally {
+            try {
+                DirtyTrackingSaSession.complete();
+            } catch (RuntimeException ex) {
+                if (held != null && !response.isCommitted()) {
+                    response.reset();
+                }
+                throw ex;
+            }
+        }
+        if (held != null) {
+            held.copyBodyToResponse();
+        }
+    }
+}
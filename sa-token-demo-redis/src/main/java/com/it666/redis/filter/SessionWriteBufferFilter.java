@@ -0,0 +1,52 @@
+package com.it666.redis.filter;
+
+import cn.dev33.satoken.SaManager;
+import com.it666.redis.dao.DelegatingSaTokenDao;
+import com.it666.redis.dao.WriteBehindSaTokenDao;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Opens a session write buffer for each request and flushes it when the request completes.
+ * Does nothing unless a {@link WriteBehindSaTokenDao} is installed.
+ * <p>
+ * The response body is held back until the flush has succeeded, so a client never sees a token
+ * or a 200 for a write that has not reached Redis yet. If the flush fails the held response is
+ * discarded and the error propagates, so the client gets an error instead.
+ * {@code sendError} and {@code sendRedirect} still commit immediately.
+ */
+public class SessionWriteBufferFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        WriteBehindSaTokenDao dao = DelegatingSaTokenDao.unwrap(SaManager.getSaTokenDao(), WriteBehindSaTokenDao.class);
+        if (dao == null || dao.isBuffering()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper held = new ContentCachingResponseWrapper(response);
+        dao.begin();
+        try {
+            chain.doFilter(request, held);
+        } finally {
+            try {
+                dao.complete();
+            } catch (RuntimeException ex) {
+                if (!response.isCommitted()) {
+                    // drops the handler's status and headers too, e.g. the token cookie of a login
+                    response.reset();
+                }
+                throw ex;
+            }
+        }
+        held.copyBodyToResponse();
+    }
+}
@@ -0,0 +1,118 @@
+package com.it666.redis.guard;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter over strings, safe for concurrent adds and lookups.
+ * <p>
+ * Bits live in an {@link AtomicLongArray} and are set with a compare-and-set loop, so concurrent
+ * adds never lose each other's bits (a lost bit would be a false negative). The {@code k} probe
+ * positions come from one 64-bit hash split into two halves (Kirsch–Mitzenmacher double hashing).
+ */
+final class BloomFilter {
+
+    private static final int MAX_WORDS = 1 << 25;
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    /**
+     * Sized for {@code expectedEntries} at a false-positive probability of {@code fpp}.
+     */
+    BloomFilter(long expectedEntries, double fpp) {
+        long n = Math.max(1, expectedEntries);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        // capped at 2^31 bits, the range of the probe positions
+        int words = (int) Math.min(MAX_WORDS, Math.max(1, (m + 63) >>> 6));
+        this.words = new AtomicLongArray(words);
+        this.bits = (long) words << 6;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+    }
+
+    void add(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long bitSize() {
+        return bits;
+    }
+
+    int hashCount() {
+        return hashes;
+    }
+
+    /**
+     * Estimated number of distinct entries, derived from the fraction of set bits.
+     */
+    long approximateEntries() {
+        long set = setBits();
+        if (set >= bits) {
+            return Long.MAX_VALUE;
+        }
+        return Math.round(-((double) bits / hashes) * Math.log(1 - (double) set / bits));
+    }
+
+    /**
+     * Probability that an absent value is reported present, given the bits currently set.
+     */
+    double expectedFpp() {
+        return Math.pow((double) setBits() / bits, hashes);
+    }
+
+    private long setBits() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) {
+            set += Long.bitCount(words.get(i));
+        }
+        return set;
+    }
+
+    private long index(int combined) {
+        return (combined & Integer.MAX_VALUE) % bits;
+    }
+
+    /**
+     * FNV-1a over the UTF-16 chars, finished with the MurmurHash3 64-bit mixer so both halves are usable.
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,343 @@
+package com.it666.redis.guard;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import com.it666.redis.dao.DelegatingSaTokenDao;
+import com.it666.redis.dao.NearCache;
+import com.it666.redis.dao.RedisInvalidationBus;
+import com.it666.redis.dao.StorageStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Front filter for token lookups ({@code demo.token-guard.enabled=true}), so that garbage, expired
+ * and revoked {@code satoken} headers do not cost a storage read each.
+ * <ul>
+ *     <li>A Bloom filter of all live token keys is rebuilt from storage every {@code rebuildIntervalMillis}.
+ *     A token it has never seen is rejected without any I/O.</li>
+ *     <li>Tokens that got past the filter but were missing in storage are remembered for a short TTL in
+ *     a negative {@link NearCache}, so repeating the same bad token does not reach storage either.</li>
+ *     <li>Tokens written on this node are added to the filter and dropped from the negative cache
+ *     before and after the write, and announced to the other nodes on a {@link RedisInvalidationBus},
+ *     which do the same.</li>
+ * </ul>
+ * The filter only rejects what it can know about. New tokens carry their issue time ({@link #stamp});
+ * a token issued after the current filter's scan started goes on to storage even if its announcement
+ * has not arrived yet or was lost. The bus is watched with heartbeats and disconnect events: while
+ * it is down, and until a rebuild has started after it came back, a filter miss goes on to storage
+ * as well. Until the first rebuild has finished only the negative cache is active.
+ */
+public class TokenGuardSaTokenDao extends DelegatingSaTokenDao implements StorageStats {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenGuardSaTokenDao.class);
+
+    private static final String MISSING = "";
+    private static final String TOKEN_KIND = "token:";
+    private static final char ISSUED_SEPARATOR = '.';
+    private static final long HEARTBEAT_MILLIS = 1000;
+    private static final long BUS_TIMEOUT_MILLIS = 3 * HEARTBEAT_MILLIS;
+    /**
+     * Allowed difference between the clocks of two nodes, plus the time between creating a token and
+     * writing its key.
+     */
+    private static final long ISSUE_SKEW_MILLIS = 5000;
+
+    private final NearCache negativeCache;
+    private final RedisInvalidationBus bus;
+    private final TokenKeyScanner scanner;
+    private final String scanPattern;
+    private final long expectedTokens;
+    private final double fpp;
+    private final long rebuildIntervalMillis;
+
+    private volatile BloomFilter bloom;
+    private volatile BloomFilter building;
+    private volatile long bloomSince;
+    private volatile boolean busUp;
+    private volatile long busDownAt = System.currentTimeMillis();
+    private long lastDisconnectAt;
+    private ScheduledExecutorService rebuilder;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder bloomRejections = new LongAdder();
+    private final LongAdder freshPasses = new LongAdder();
+    private final LongAdder busGapPasses = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder storageReads = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong rebuildFailures = new AtomicLong();
+    private volatile long lastBuildKeys;
+    private volatile long lastBuildMillis;
+    private volatile long lastBuildAt;
+
+    /**
+     * @param tokenName {@code sa-token.token-name}, the first segment of every token key
+     * @param expectedTokens lower bound for the filter size; each rebuild sizes for twice the tokens found last time
+     */
+    public TokenGuardSaTokenDao(SaTokenDao delegate, NearCache negativeCache, RedisInvalidationBus bus,
+                                TokenKeyScanner scanner, String tokenName, long expectedTokens, double fpp,
+                                long rebuildIntervalMillis) {
+        super(delegate);
+        this.negativeCache = negativeCache;
+        this.bus = bus;
+        this.scanner = scanner;
+        this.scanPattern = tokenName + ":*:" + TOKEN_KIND + "*";
+        this.expectedTokens = expectedTokens;
+        this.fpp = fpp;
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+        bus.addListener(key -> {
+            if (isTokenKey(key)) {
+                remember(key);
+            }
+        });
+    }
+
+    @Override
+    public String get(String key) {
+        if (!isTokenKey(key)) {
+            return delegate.get(key);
+        }
+        lookups.increment();
+        // since before bloom: rebuild() publishes them the other way round, so a stale pair errs on passing
+        long since = bloomSince;
+        BloomFilter filter = bloom;
+        boolean filtered = filter != null;
+        if (filtered && !filter.mightContain(key)) {
+            filtered = false;
+            if (!busUp || since <= Math.max(busDownAt, bus.lastDisconnectAt())) {
+                // announcements may have been lost since the scan
+                busGapPasses.increment();
+            } else if (issuedSince(key, since)) {
+                freshPasses.increment();
+            } else {
+                bloomRejections.increment();
+                return null;
+            }
+        }
+        if (negativeCache.get(key) != null) {
+            negativeHits.increment();
+            return null;
+        }
+        long generation = negativeCache.generation();
+        storageReads.increment();
+        String value = delegate.get(key);
+        if (value == null) {
+            if (filtered) {
+                // includes tokens revoked or expired since the last rebuild
+                falsePositives.increment();
+            }
+            negativeCache.put(key, MISSING, generation);
+        }
+        return value;
+    }
+
+    @Override
+    public void set(String key, String value, long timeout) {
+        if (!isTokenKey(key)) {
+            delegate.set(key, value, timeout);
+            return;
+        }
+        remember(key);
+        delegate.set(key, value, timeout);
+        written(key);
+    }
+
+    @Override
+    public void update(String key, String value) {
+        if (!isTokenKey(key)) {
+            delegate.update(key, value);
+            return;
+        }
+        remember(key);
+        delegate.update(key, value);
+        written(key);
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        bus.start();
+        // two threads: a long rebuild must not hold up the heartbeats
+        rebuilder = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "sa-token-guard-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebuilder.scheduleWithFixedDelay(this::rebuildQuietly, 0, rebuildIntervalMillis, TimeUnit.MILLISECONDS);
+        rebuilder.scheduleWithFixedDelay(this::checkBus, 0, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+        bus.stop();
+        negativeCache.invalidateAll();
+        super.destroy();
+    }
+
+    /**
+     * Builds a new filter from a full scan of the token keys and swaps it in. Keys written while the
+     * scan runs are added to both the old and the new filter.
+     */
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        BloomFilter next = new BloomFilter(Math.max(expectedTokens, 2 * lastBuildKeys), fpp);
+        building = next;
+        long[] keys = {0};
+        try {
+            scanner.scan(scanPattern, key -> {
+                next.add(key);
+                keys[0]++;
+            });
+            bloom = next;
+            bloomSince = started;
+        } finally {
+            building = null;
+        }
+        lastBuildKeys = keys[0];
+        lastBuildAt = System.currentTimeMillis();
+        lastBuildMillis = lastBuildAt - started;
+        rebuilds.incrementAndGet();
+    }
+
+    /**
+     * Appends the issue time to a newly created token, so that nodes whose filter was built before
+     * the token existed let it through to storage.
+     */
+    public static String stamp(String token, long issuedAt) {
+        return token + ISSUED_SEPARATOR + Long.toString(issuedAt, 36);
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        long rejected = bloomRejections.sum();
+        long passedMissing = falsePositives.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lookups", lookups.sum());
+        stats.put("bloomRejections", rejected);
+        stats.put("freshPasses", freshPasses.sum());
+        stats.put("busGapPasses", busGapPasses.sum());
+        stats.put("negativeHits", negativeHits.sum());
+        stats.put("storageReads", storageReads.sum());
+        stats.put("falsePositives", passedMissing);
+        stats.put("observedFalsePositiveRate", rejected + passedMissing == 0 ? 0.0
+                : (double) passedMissing / (rejected + passedMissing));
+        BloomFilter filter = bloom;
+        Map<String, Object> bloomStats = new LinkedHashMap<>();
+        bloomStats.put("ready", filter != null);
+        if (filter != null) {
+            bloomStats.put("bits", filter.bitSize());
+            bloomStats.put("hashes", filter.hashCount());
+            bloomStats.put("approximateEntries", filter.approximateEntries());
+            bloomStats.put("expectedFalsePositiveRate", filter.expectedFpp());
+        }
+        bloomStats.put("rebuilds", rebuilds.get());
+        bloomStats.put("rebuildFailures", rebuildFailures.get());
+        bloomStats.put("lastBuildKeys", lastBuildKeys);
+        bloomStats.put("lastBuildMillis", lastBuildMillis);
+        bloomStats.put("lastBuildAt", lastBuildAt);
+        stats.put("bloom", bloomStats);
+        Map<String, Object> busStats = new LinkedHashMap<>();
+        busStats.put("up", busUp);
+        busStats.put("lastHeardAt", bus.lastHeardAt());
+        busStats.put("lastDownAt", busDownAt);
+        busStats.put("lastDisconnectAt", bus.lastDisconnectAt());
+        stats.put("bus", busStats);
+        stats.put("negativeCache", negativeCache.stats());
+        return stats;
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException ex) {
+            rebuildFailures.incrementAndGet();
+            log.warn("token bloom filter rebuild failed, keeping the previous filter", ex);
+        }
+    }
+
+    /**
+     * Sends a heartbeat and checks that the previous ones came back and that no connection has dropped
+     * since the last check. When the bus comes back up the filter is rebuilt straight away, since
+     * announcements sent while it was down are lost.
+     */
+    private void checkBus() {
+        long now = System.currentTimeMillis();
+        boolean up = bus.isListening() && now - bus.lastHeardAt() <= BUS_TIMEOUT_MILLIS;
+        boolean wasUp = busUp;
+        long disconnectAt = bus.lastDisconnectAt();
+        boolean reconnected = disconnectAt != lastDisconnectAt;
+        lastDisconnectAt = disconnectAt;
+        if (!up || !wasUp || reconnected) {
+            busDownAt = now;
+        }
+        busUp = up;
+        bus.heartbeat();
+        if (up && (!wasUp || reconnected)) {
+            rebuilder.execute(this::rebuildQuietly);
+        }
+    }
+
+    /**
+     * Whether the token in {@code key} was stamped ({@link #stamp}) after {@code since}, give or take
+     * {@link #ISSUE_SKEW_MILLIS}. Stamps from the future are not trusted.
+     */
+    private static boolean issuedSince(String key, long since) {
+        int separator = key.lastIndexOf(ISSUED_SEPARATOR);
+        if (separator < key.lastIndexOf(':') || separator == key.length() - 1 || key.length() - separator > 13) {
+            return false;
+        }
+        long issuedAt;
+        try {
+            issuedAt = Long.parseLong(key.substring(separator + 1), 36);
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+        return issuedAt >= since - ISSUE_SKEW_MILLIS && issuedAt <= System.currentTimeMillis() + ISSUE_SKEW_MILLIS;
+    }
+
+    private void written(String key) {
+        // again after the write: a rebuild that started scanning before the key existed has missed it
+        remember(key);
+        bus.publish(key);
+    }
+
+    /**
+     * Makes {@code key} pass both filters. Reads {@link #building} before {@link #bloom}: a rebuild
+     * publishes the new filter before clearing {@code building}, so one of the two reads sees it.
+     */
+    private void remember(String key) {
+        BloomFilter next = building;
+        if (next != null) {
+            next.add(key);
+        }
+        BloomFilter filter = bloom;
+        if (filter != null) {
+            filter.add(key);
+        }
+        negativeCache.invalidate(key);
+    }
+
+    /**
+     * Token keys are {@code <token-name>:<login-type>:token:<token>}; checked without allocating
+     * because it runs on every read.
+     */
+    private static boolean isTokenKey(String key) {
+        int first = key.indexOf(':');
+        if (first < 0) {
+            return false;
+        }
+        int second = key.indexOf(':', first + 1);
+        return second > 0 && key.startsWith(TOKEN_KIND, second + 1) && key.length() > second + 1 + TOKEN_KIND.length();
+    }
+}
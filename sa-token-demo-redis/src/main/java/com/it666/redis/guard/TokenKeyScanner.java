@@ -0,0 +1,12 @@
+package com.it666.redis.guard;
+
+import java.util.function.Consumer;
+
+/**
+ * Enumerates the keys in storage that match a glob pattern, e.g. with Redis {@code SCAN}.
+ */
+@FunctionalInterface
+public interface TokenKeyScanner {
+
+    void scan(String pattern, Consumer<String> sink);
+}
@@ -0,0 +1,105 @@
+package com.it666.redis.health;
+
+import com.it666.redis.metrics.LatencyHistogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Probes Redis in the background (PING, SET, GET on a per-node key) and keeps a rolling latency
+ * histogram per command. {@link #snapshot()} returns the result of the last probe, so the
+ * {@code /redis-demo/storage} endpoint never touches Redis however often it is polled.
+ */
+@Component
+public class RedisHealthProber {
+
+    private static final int WINDOW_SLICES = 6;
+
+    private final StringRedisTemplate redisTemplate;
+    private final String probeKey;
+    private final LatencyHistogram ping;
+    private final LatencyHistogram get;
+    private final LatencyHistogram set;
+
+    private long probes;
+    private long failures;
+    private long consecutiveFailures;
+    private String lastError;
+
+    private volatile Map<String, Object> snapshot;
+
+    public RedisHealthProber(@Autowired(required = false) StringRedisTemplate redisTemplate,
+                             @Value("${demo.node-id:${spring.application.name}:${server.port}}") String nodeId,
+                             @Value("${demo.health.window:60s}") Duration window) {
+        this.redisTemplate = redisTemplate;
+        this.probeKey = "satoken:demo:redis-check:" + nodeId;
+        this.ping = new LatencyHistogram(window.toMillis(), WINDOW_SLICES);
+        this.get = new LatencyHistogram(window.toMillis(), WINDOW_SLICES);
+        this.set = new LatencyHistogram(window.toMillis(), WINDOW_SLICES);
+        this.snapshot = Collections.singletonMap("status", redisTemplate == null ? "redis template missing" : "PENDING");
+    }
+
+    public Map<String, Object> snapshot() {
+        return snapshot;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${demo.health.probe-interval-ms:5000}")
+    public void probe() {
+        if (redisTemplate == null) {
+            return;
+        }
+        probes++;
+        Instant probedAt = Instant.now();
+        String readValue = null;
+        try {
+            timed(ping, () -> redisTemplate.execute((RedisCallback<String>) RedisConnection::ping));
+            String value = probedAt.toString();
+            timed(set, () -> {
+                redisTemplate.opsForValue().set(probeKey, value, 120, TimeUnit.SECONDS);
+                return null;
+            });
+            readValue = timed(get, () -> redisTemplate.opsForValue().get(probeKey));
+            consecutiveFailures = 0;
+        } catch (RuntimeException ex) {
+            failures++;
+            consecutiveFailures++;
+            lastError = ex.getClass().getSimpleName() + ": " + ex.getMessage();
+        }
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("ping", ping.snapshot());
+        latency.put("set", set.snapshot());
+        latency.put("get", get.snapshot());
+
+        Map<String, Object> next = new LinkedHashMap<>();
+        next.put("status", consecutiveFailures == 0 ? "UP" : "DOWN");
+        next.put("probedAt", probedAt.toString());
+        next.put("probes", probes);
+        next.put("failures", failures);
+        next.put("consecutiveFailures", consecutiveFailures);
+        next.put("lastError", lastError);
+        next.put("writeKey", probeKey);
+        next.put("readValue", readValue);
+        next.put("latency", latency);
+        snapshot = Collections.unmodifiableMap(next);
+    }
+
+    private static <T> T timed(LatencyHistogram histogram, Supplier<T> command) {
+        long start = System.nanoTime();
+        T result = command.get();
+        histogram.record(System.nanoTime() - start);
+        return result;
+    }
+}
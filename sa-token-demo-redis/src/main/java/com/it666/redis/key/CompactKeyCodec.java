@@ -0,0 +1,259 @@
+package com.it666.redis.key;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary layout for the per-token and per-account keys ({@code demo.compact-keys.enabled=true}).
+ * <p>
+ * {@code <tokenName>:<loginType>:<kind>:<id>} with kind {@code token}, {@code session},
+ * {@code token-session} or {@code last-active} becomes:
+ * <pre>
+ * 0x01 | header | [length | loginType]  | id
+ *        header = kind (bits 0-2) | id format (bits 3-4) | 0x20 if loginType is not the default
+ * </pre>
+ * The id is packed when it round-trips exactly: a lowercase UUID ({@code token-style: uuid}) as its
+ * 16 bytes, other lowercase hex of even length ({@code simple-uuid}) as half as many bytes, a
+ * decimal number without leading zeros (numeric login ids) as a big-endian integer of 1 to 8 bytes,
+ * anything else as its UTF-8 bytes. The id ends the key, so it needs no length.
+ * <p>
+ * All other keys keep their plain UTF-8 form. No plain key starts with {@code 0x01}, so
+ * {@link #decode} tells both layouts apart by the first byte.
+ */
+public final class CompactKeyCodec {
+
+    static final byte MARKER = 0x01;
+
+    /** index = kind code; 0 is unused */
+    private static final String[] KINDS = {null, "token", "session", "token-session", "last-active"};
+
+    private static final int KIND_MASK = 0x07;
+    private static final int FORMAT_SHIFT = 3;
+    private static final int FORMAT_RAW = 0;
+    private static final int FORMAT_UUID = 1;
+    private static final int FORMAT_HEX = 2;
+    private static final int FORMAT_NUMBER = 3;
+    private static final int EXPLICIT_LOGIN_TYPE = 0x20;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String tokenName;
+    private final String defaultLoginType;
+
+    /**
+     * @param tokenName {@code sa-token.token-name}, the first segment of every key
+     * @param defaultLoginType the login type stored as a header bit instead of a string, normally {@code login}
+     */
+    public CompactKeyCodec(String tokenName, String defaultLoginType) {
+        this.tokenName = tokenName;
+        this.defaultLoginType = defaultLoginType;
+    }
+
+    public String getTokenName() {
+        return tokenName;
+    }
+
+    /**
+     * The Redis key for {@code key}: the compact layout if it is one of the packed kinds, otherwise its UTF-8 bytes.
+     */
+    public byte[] encode(String key) {
+        int typeStart = tokenName.length() + 1;
+        if (key.length() <= typeStart || !key.startsWith(tokenName) || key.charAt(typeStart - 1) != ':') {
+            return plain(key);
+        }
+        int typeEnd = key.indexOf(':', typeStart);
+        int kindEnd = typeEnd < 0 ? -1 : key.indexOf(':', typeEnd + 1);
+        int kind = kindEnd < 0 ? 0 : kind(key, typeEnd + 1, kindEnd);
+        if (kind == 0 || kindEnd == key.length() - 1) {
+            return plain(key);
+        }
+
+        int header = kind;
+        byte[] loginType = null;
+        if (!key.regionMatches(typeStart, defaultLoginType, 0, defaultLoginType.length())
+                || typeEnd - typeStart != defaultLoginType.length()) {
+            loginType = key.substring(typeStart, typeEnd).getBytes(StandardCharsets.UTF_8);
+            if (loginType.length > 255) {
+                return plain(key);
+            }
+            header |= EXPLICIT_LOGIN_TYPE;
+        }
+
+        String id = key.substring(kindEnd + 1);
+        int format = format(id);
+        byte[] packedId = pack(id, format);
+        header |= format << FORMAT_SHIFT;
+
+        int length = 2 + (loginType == null ? 0 : 1 + loginType.length) + packedId.length;
+        byte[] raw = new byte[length];
+        raw[0] = MARKER;
+        raw[1] = (byte) header;
+        int pos = 2;
+        if (loginType != null) {
+            raw[pos++] = (byte) loginType.length;
+            System.arraycopy(loginType, 0, raw, pos, loginType.length);
+            pos += loginType.length;
+        }
+        System.arraycopy(packedId, 0, raw, pos, packedId.length);
+        return raw;
+    }
+
+    /**
+     * The logical key for a Redis key in either layout.
+     */
+    public String decode(byte[] raw) {
+        if (!isCompact(raw)) {
+            return new String(raw, StandardCharsets.UTF_8);
+        }
+        int header = raw[1] & 0xFF;
+        int pos = 2;
+        String loginType = defaultLoginType;
+        if ((header & EXPLICIT_LOGIN_TYPE) != 0) {
+            int length = raw[pos++] & 0xFF;
+            loginType = new String(raw, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+        }
+        String id = unpack(raw, pos, (header >> FORMAT_SHIFT) & 0x03);
+        return tokenName + ':' + loginType + ':' + KINDS[header & KIND_MASK] + ':' + id;
+    }
+
+    public static boolean isCompact(byte[] raw) {
+        if (raw.length < 3 || raw[0] != MARKER) {
+            return false;
+        }
+        int kind = raw[1] & KIND_MASK;
+        return kind > 0 && kind < KINDS.length;
+    }
+
+    /**
+     * Whether {@code raw} is a compact key of {@code kind} ({@code token}, {@code session}, ...),
+     * without decoding it.
+     */
+    public static boolean isCompact(byte[] raw, String kind) {
+        return isCompact(raw) && KINDS[raw[1] & KIND_MASK].equals(kind);
+    }
+
+    public static byte[] plain(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int kind(String key, int start, int end) {
+        for (int kind = 1; kind < KINDS.length; kind++) {
+            String name = KINDS[kind];
+            if (name.length() == end - start && key.startsWith(name, start)) {
+                return kind;
+            }
+        }
+        return 0;
+    }
+
+    private static int format(String id) {
+        if (isNumber(id)) {
+            return FORMAT_NUMBER;
+        }
+        if (id.length() == 36 && isUuid(id)) {
+            return FORMAT_UUID;
+        }
+        if ((id.length() & 1) == 0 && isHex(id, 0, id.length())) {
+            return FORMAT_HEX;
+        }
+        return FORMAT_RAW;
+    }
+
+    private static byte[] pack(String id, int format) {
+        switch (format) {
+            case FORMAT_NUMBER: {
+                long value = Long.parseLong(id);
+                int bytes = Math.max(1, (64 - Long.numberOfLeadingZeros(value) + 7) / 8);
+                byte[] out = new byte[bytes];
+                for (int i = bytes - 1; i >= 0; i--) {
+                    out[i] = (byte) value;
+                    value >>>= 8;
+                }
+                return out;
+            }
+            case FORMAT_UUID:
+                return hexToBytes(id.replace("-", ""));
+            case FORMAT_HEX:
+                return hexToBytes(id);
+            default:
+                return id.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String unpack(byte[] raw, int pos, int format) {
+        switch (format) {
+            case FORMAT_NUMBER: {
+                long value = 0;
+                for (int i = pos; i < raw.length; i++) {
+                    value = (value << 8) | (raw[i] & 0xFF);
+                }
+                return Long.toString(value);
+            }
+            case FORMAT_UUID: {
+                String hex = bytesToHex(raw, pos);
+                return hex.substring(0, 8) + '-' + hex.substring(8, 12) + '-' + hex.substring(12, 16) + '-'
+                        + hex.substring(16, 20) + '-' + hex.substring(20);
+            }
+            case FORMAT_HEX:
+                return bytesToHex(raw, pos);
+            default:
+                return new String(Arrays.copyOfRange(raw, pos, raw.length), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Digits without a leading zero that fit a long, so {@code Long.toString} restores them exactly.
+     */
+    private static boolean isNumber(String id) {
+        int length = id.length();
+        if (length == 0 || length > 18 || (id.charAt(0) == '0' && length > 1)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUuid(String id) {
+        return id.charAt(8) == '-' && id.charAt(13) == '-' && id.charAt(18) == '-' && id.charAt(23) == '-'
+                && isHex(id, 0, 8) && isHex(id, 9, 13) && isHex(id, 14, 18) && isHex(id, 19, 23) && isHex(id, 24, 36);
+    }
+
+    /**
+     * Lowercase only: uppercase hex would come back lowercase.
+     */
+    private static boolean isHex(String id, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] hexToBytes(String hex) {
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) (Character.digit(hex.charAt(2 * i), 16) << 4 | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+        return out;
+    }
+
+    private static String bytesToHex(byte[] raw, int pos) {
+        char[] out = new char[(raw.length - pos) * 2];
+        for (int i = pos, j = 0; i < raw.length; i++) {
+            out[j++] = HEX[(raw[i] >> 4) & 0x0F];
+            out[j++] = HEX[raw[i] & 0x0F];
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,91 @@
+package com.it666.redis.key;
+
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates existing keys between the plain and the {@link CompactKeyCodec} layout.
+ * <p>
+ * Keys are found with {@code SCAN} and renamed in pipelined batches with the same script as the
+ * dao's read fallback, so values and TTLs are kept and nothing is copied. If the target already
+ * exists it was written through the new layout in the meantime, and the old key is dropped instead.
+ * Safe to run while nodes are serving, and to run again.
+ */
+public final class CompactKeyMigrator {
+
+    private static final long SCAN_COUNT = 500;
+    private static final int BATCH = 500;
+
+    private CompactKeyMigrator() {
+    }
+
+    /**
+     * @param pack {@code true} to move plain keys to the compact layout, {@code false} to move them back
+     */
+    public static Map<String, Object> migrate(StringRedisTemplate redisTemplate, CompactKeyCodec codec, boolean pack) {
+        long started = System.currentTimeMillis();
+        byte[] pattern = pack
+                ? CompactKeyCodec.plain(codec.getTokenName() + ":*")
+                : new byte[]{CompactKeyCodec.MARKER, '*'};
+        long[] counts = new long[4];
+        List<byte[][]> batch = new ArrayList<>(BATCH);
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build();
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            try (Cursor<byte[]> keys = connection.keyCommands().scan(options)) {
+                while (keys.hasNext()) {
+                    byte[] from = keys.next();
+                    counts[0]++;
+                    String key = codec.decode(from);
+                    byte[] to = pack ? codec.encode(key) : CompactKeyCodec.plain(key);
+                    if (CompactKeyCodec.isCompact(to) != pack) {
+                        // not one of the packed kinds
+                        counts[3]++;
+                        continue;
+                    }
+                    batch.add(new byte[][]{from, to});
+                    if (batch.size() == BATCH) {
+                        rename(redisTemplate, batch, counts);
+                    }
+                }
+            }
+            return null;
+        });
+        rename(redisTemplate, batch, counts);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("direction", pack ? "pack" : "unpack");
+        report.put("scanned", counts[0]);
+        report.put("renamed", counts[1]);
+        report.put("droppedStale", counts[2]);
+        report.put("skipped", counts[3]);
+        report.put("tookMs", System.currentTimeMillis() - started);
+        return report;
+    }
+
+    private static void rename(StringRedisTemplate redisTemplate, List<byte[][]> batch, long[] counts) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[][] pair : batch) {
+                connection.scriptingCommands().eval(SaTokenDaoForCompactKeys.RENAME_SCRIPT, ReturnType.INTEGER, 2,
+                        pair[0], pair[1]);
+            }
+            return null;
+        });
+        for (Object result : results) {
+            if (result instanceof Long && (Long) result > 0) {
+                counts[(int) (long) (Long) result]++;
+            }
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,200 @@
+package com.it666.redis.key;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.dao.auto.SaTokenDaoByObjectFollowString;
+import cn.dev33.satoken.util.SaFoxUtil;
+import com.it666.redis.dao.StorageStats;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Redis dao that stores token and session keys in the {@link CompactKeyCodec} layout
+ * ({@code demo.compact-keys.enabled=true}). Values are the same UTF-8 strings as in the template dao.
+ * <p>
+ * With {@code legacyFallback}, a read that misses the compact key looks for the plain key once and
+ * renames it in place (TTL kept), so a node can be switched over existing data and keys migrate as
+ * they are used; {@link CompactKeyMigrator} moves the rest in bulk. Deletes then remove both forms.
+ * Turn the fallback off after the migration: it costs an extra round trip for every missing key.
+ * <p>
+ * {@code update} is a single {@code SET ... XX KEEPTTL} (Redis 6.0+).
+ */
+public class SaTokenDaoForCompactKeys implements SaTokenDaoByObjectFollowString, StorageStats {
+
+    /**
+     * KEYS[1] -> KEYS[2] unless KEYS[1] is missing; if KEYS[2] already exists it is newer, and KEYS[1]
+     * is dropped instead. Returns 0 if KEYS[1] was missing, 1 if renamed, 2 if dropped.
+     */
+    static final byte[] RENAME_SCRIPT = ("if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+            + "if redis.call('RENAMENX', KEYS[1], KEYS[2]) == 1 then return 1 end "
+            + "redis.call('DEL', KEYS[1]) return 2").getBytes(StandardCharsets.UTF_8);
+
+    private static final long SCAN_COUNT = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final CompactKeyCodec codec;
+    private final boolean legacyFallback;
+
+    private final LongAdder compactWrites = new LongAdder();
+    private final LongAdder plainWrites = new LongAdder();
+    private final LongAdder legacyLookups = new LongAdder();
+    private final LongAdder promoted = new LongAdder();
+
+    public SaTokenDaoForCompactKeys(StringRedisTemplate redisTemplate, CompactKeyCodec codec, boolean legacyFallback) {
+        this.redisTemplate = redisTemplate;
+        this.codec = codec;
+        this.legacyFallback = legacyFallback;
+    }
+
+    @Override
+    public String get(String key) {
+        byte[] raw = codec.encode(key);
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(raw));
+        if (value == null && promote(key, raw)) {
+            value = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(raw));
+        }
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void set(String key, String value, long timeout) {
+        if (timeout == 0 || timeout <= SaTokenDao.NOT_VALUE_EXPIRE) {
+            return;
+        }
+        byte[] raw = encodeForWrite(key);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Object>) connection -> timeout == SaTokenDao.NEVER_EXPIRE
+                ? connection.stringCommands().set(raw, bytes)
+                : connection.stringCommands().setEx(raw, timeout, bytes));
+    }
+
+    @Override
+    public void update(String key, String value) {
+        byte[] raw = encodeForWrite(key);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.stringCommands().set(raw, bytes, Expiration.keepTtl(), SetOption.ifPresent()));
+    }
+
+    @Override
+    public void delete(String key) {
+        byte[] raw = codec.encode(key);
+        if (legacyFallback && CompactKeyCodec.isCompact(raw)) {
+            byte[] plain = CompactKeyCodec.plain(key);
+            redisTemplate.execute((RedisCallback<Object>) connection -> connection.keyCommands().del(raw, plain));
+        } else {
+            redisTemplate.execute((RedisCallback<Object>) connection -> connection.keyCommands().del(raw));
+        }
+    }
+
+    @Override
+    public long getTimeout(String key) {
+        byte[] raw = codec.encode(key);
+        Long ttl = redisTemplate.execute((RedisCallback<Long>) connection -> connection.keyCommands().ttl(raw));
+        if ((ttl == null || ttl == SaTokenDao.NOT_VALUE_EXPIRE) && promote(key, raw)) {
+            ttl = redisTemplate.execute((RedisCallback<Long>) connection -> connection.keyCommands().ttl(raw));
+        }
+        return ttl == null ? SaTokenDao.NOT_VALUE_EXPIRE : ttl;
+    }
+
+    @Override
+    public void updateTimeout(String key, long timeout) {
+        byte[] raw = codec.encode(key);
+        redisTemplate.execute((RedisCallback<Object>) connection -> timeout == SaTokenDao.NEVER_EXPIRE
+                ? connection.keyCommands().persist(raw)
+                : connection.keyCommands().expire(raw, timeout));
+    }
+
+    /**
+     * {@code SCAN} over both layouts; compact keys are decoded before matching.
+     */
+    @Override
+    public List<String> searchData(String prefix, String keyword, int start, int size, boolean sortType) {
+        // a key not yet promoted by the fallback can exist in both layouts
+        Set<String> keys = new LinkedHashSet<>();
+        scan(CompactKeyCodec.plain(prefix + "*" + keyword + "*"), raw -> keys.add(codec.decode(raw)));
+        scan(new byte[]{CompactKeyCodec.MARKER, '*'}, raw -> {
+            String key = codec.decode(raw);
+            if (key.startsWith(prefix) && key.indexOf(keyword, prefix.length()) >= 0) {
+                keys.add(key);
+            }
+        });
+        return SaFoxUtil.searchList(new ArrayList<>(keys), start, size, sortType);
+    }
+
+    /**
+     * Hands the decoded name of every compact key of {@code kind} to {@code sink}.
+     */
+    public void scanCompactKeys(String kind, Consumer<String> sink) {
+        scan(new byte[]{CompactKeyCodec.MARKER, '*'}, raw -> {
+            if (CompactKeyCodec.isCompact(raw, kind)) {
+                sink.accept(codec.decode(raw));
+            }
+        });
+    }
+
+    public CompactKeyCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("legacyFallback", legacyFallback);
+        stats.put("compactWrites", compactWrites.sum());
+        stats.put("plainWrites", plainWrites.sum());
+        stats.put("legacyLookups", legacyLookups.sum());
+        stats.put("promoted", promoted.sum());
+        return stats;
+    }
+
+    private byte[] encodeForWrite(String key) {
+        byte[] raw = codec.encode(key);
+        (CompactKeyCodec.isCompact(raw) ? compactWrites : plainWrites).increment();
+        return raw;
+    }
+
+    /**
+     * Renames the plain form of {@code key} to {@code raw} if it still exists.
+     *
+     * @return whether {@code raw} may exist now
+     */
+    private boolean promote(String key, byte[] raw) {
+        if (!legacyFallback || !CompactKeyCodec.isCompact(raw)) {
+            return false;
+        }
+        legacyLookups.increment();
+        byte[] plain = CompactKeyCodec.plain(key);
+        Long result = redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.scriptingCommands().eval(RENAME_SCRIPT, ReturnType.INTEGER, 2, plain, raw));
+        if (result == null || result == 0) {
+            return false;
+        }
+        promoted.increment();
+        return true;
+    }
+
+    private void scan(byte[] pattern, Consumer<byte[]> sink) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build();
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                cursor.forEachRemaining(sink);
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,196 @@
+package com.it666.redis.lettuce;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.dao.auto.SaTokenDaoByObjectFollowString;
+import cn.dev33.satoken.util.SaFoxUtil;
+import com.it666.redis.dao.StorageStats;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanIterator;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis dao on Lettuce's async API ({@code demo.storage-mode=lettuce-async}), replacing the pooled
+ * {@code StringRedisTemplate} of {@code SaTokenDaoForRedisTemplate}.
+ * <p>
+ * A handful of long-lived connections are shared by all request threads. Lettuce writes each
+ * command to its connection without waiting for earlier replies, so commands issued concurrently by
+ * many threads reach Redis back to back as one pipeline, and no thread ever waits for a free
+ * connection. Each key always uses the same connection, which keeps the commands for one key in order:
+ * <ul>
+ *     <li>Reads wait for their reply (the {@link SaTokenDao} contract is synchronous).</li>
+ *     <li>{@code set} and {@code delete} always wait for their reply, so a login never hands out a
+ *     token that was not stored. {@code update} and {@code updateTimeout} wait too, unless
+ *     {@code awaitWrites} is turned off; then they are fire-and-forget. A later read of the same key
+ *     queues behind them on the same connection and so still sees them, and failed writes are
+ *     logged and counted.</li>
+ * </ul>
+ * Keys and values are plain UTF-8 strings, the same layout as the template dao, so the modes can be
+ * switched over existing data. {@code update} is a single {@code SET ... XX KEEPTTL} (Redis 6.0+)
+ * instead of {@code PTTL} followed by {@code SET}.
+ */
+public class LettuceAsyncSaTokenDao implements SaTokenDaoByObjectFollowString, StorageStats {
+
+    private static final Logger log = LoggerFactory.getLogger(LettuceAsyncSaTokenDao.class);
+
+    private static final SetArgs UPDATE_ARGS = SetArgs.Builder.xx().keepttl();
+
+    private final RedisClient client;
+    private final List<StatefulRedisConnection<String, String>> connections;
+    private final List<RedisAsyncCommands<String, String>> commands;
+    private final long timeoutMillis;
+    private final boolean awaitWrites;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder inFlightWrites = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+
+    private LettuceAsyncSaTokenDao(RedisClient client, List<StatefulRedisConnection<String, String>> connections,
+                                   long timeoutMillis, boolean awaitWrites) {
+        this.client = client;
+        this.connections = connections;
+        this.commands = new ArrayList<>(connections.size());
+        for (StatefulRedisConnection<String, String> connection : connections) {
+            commands.add(connection.async());
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.awaitWrites = awaitWrites;
+    }
+
+    /**
+     * Opens {@code connectionCount} connections to {@code uri}; the uri's timeout bounds every awaited command.
+     */
+    public static LettuceAsyncSaTokenDao connect(RedisURI uri, int connectionCount, boolean awaitWrites) {
+        RedisClient client = RedisClient.create(uri);
+        List<StatefulRedisConnection<String, String>> connections = new ArrayList<>(connectionCount);
+        try {
+            for (int i = 0; i < Math.max(1, connectionCount); i++) {
+                connections.add(client.connect());
+            }
+        } catch (RuntimeException ex) {
+            connections.forEach(StatefulRedisConnection::close);
+            client.shutdown();
+            throw ex;
+        }
+        return new LettuceAsyncSaTokenDao(client, connections, uri.getTimeout().toMillis(), awaitWrites);
+    }
+
+    @Override
+    public String get(String key) {
+        reads.increment();
+        return await(commands(key).get(key));
+    }
+
+    @Override
+    public void set(String key, String value, long timeout) {
+        if (timeout == 0 || timeout <= SaTokenDao.NOT_VALUE_EXPIRE) {
+            return;
+        }
+        RedisAsyncCommands<String, String> async = commands(key);
+        awaitWrite(timeout == SaTokenDao.NEVER_EXPIRE ? async.set(key, value) : async.setex(key, timeout, value));
+    }
+
+    @Override
+    public void update(String key, String value) {
+        write(commands(key).set(key, value, UPDATE_ARGS), key);
+    }
+
+    @Override
+    public void delete(String key) {
+        awaitWrite(commands(key).del(key));
+    }
+
+    @Override
+    public long getTimeout(String key) {
+        reads.increment();
+        Long ttl = await(commands(key).ttl(key));
+        return ttl == null ? SaTokenDao.NOT_VALUE_EXPIRE : ttl;
+    }
+
+    @Override
+    public void updateTimeout(String key, long timeout) {
+        RedisAsyncCommands<String, String> async = commands(key);
+        write(timeout == SaTokenDao.NEVER_EXPIRE ? async.persist(key) : async.expire(key, timeout), key);
+    }
+
+    /**
+     * Uses {@code SCAN} instead of the template dao's {@code KEYS}, so a search does not block Redis.
+     */
+    @Override
+    public List<String> searchData(String prefix, String keyword, int start, int size, boolean sortType) {
+        List<String> keys = new ArrayList<>();
+        ScanIterator<String> scan = ScanIterator.scan(connections.get(0).sync(),
+                ScanArgs.Builder.matches(prefix + "*" + keyword + "*").limit(1000));
+        scan.forEachRemaining(keys::add);
+        return SaFoxUtil.searchList(keys, start, size, sortType);
+    }
+
+    @Override
+    public void destroy() {
+        connections.forEach(StatefulRedisConnection::close);
+        client.shutdown();
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connections", connections.size());
+        stats.put("awaitWrites", awaitWrites);
+        stats.put("reads", reads.sum());
+        stats.put("writes", writes.sum());
+        stats.put("inFlightWrites", inFlightWrites.sum());
+        stats.put("writeFailures", writeFailures.sum());
+        return stats;
+    }
+
+    private RedisAsyncCommands<String, String> commands(String key) {
+        return commands.get((key.hashCode() & Integer.MAX_VALUE) % commands.size());
+    }
+
+    /**
+     * A write whose loss would be visible to the client (a token that was never stored, a logout
+     * that did not happen): always waits for the reply, so a failure reaches the caller.
+     */
+    private void awaitWrite(RedisFuture<?> future) {
+        writes.increment();
+        await(future);
+    }
+
+    /**
+     * A value refresh or timeout change: waits only if {@code awaitWrites} is set.
+     */
+    private void write(RedisFuture<?> future, String key) {
+        if (awaitWrites) {
+            awaitWrite(future);
+            return;
+        }
+        writes.increment();
+        inFlightWrites.increment();
+        future.whenComplete((result, ex) -> {
+            inFlightWrites.decrement();
+            if (ex != null) {
+                writeFailures.increment();
+                log.warn("asynchronous write to {} failed", key, ex);
+            }
+        });
+    }
+
+    private <T> T await(RedisFuture<T> future) {
+        return LettuceFutures.awaitOrCancel(future, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
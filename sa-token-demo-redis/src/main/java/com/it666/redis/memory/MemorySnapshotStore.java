@@ -0,0 +1,328 @@
+package com.it666.redis.memory;
+
+import com.it666.redis.serializer.SaSerializerTemplateForBinary;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk form of {@link StripedMemorySaTokenDao}: a full snapshot plus an incremental log of the
+ * changes made since, both written and read through memory-mapped files.
+ * <p>
+ * Records are {@code type, expireAt, key, value} with length-prefixed key and value; values use the
+ * {@link SaSerializerTemplateForBinary} codec. The expiry comes first so that records that have
+ * expired by the time they are loaded are skipped without reading their value. Live values are
+ * handed back still {@link Encoded} and only decoded when the dao first reads them, so a restore
+ * costs one byte array per entry instead of a full object graph.
+ * <p>
+ * Both files start with a generation number. Compaction writes a new snapshot under a temporary
+ * name, renames it into place and only then starts a new log, so a log is replayed only on top of
+ * the snapshot it belongs to; a torn record at the end of the log is cut off.
+ */
+public class MemorySnapshotStore {
+
+    private static final int MAGIC = 0x5341544B;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final long MIN_COMPACT_BYTES = 1 << 20;
+
+    /**
+     * A live entry, or a deletion when {@code value} is {@code null}.
+     */
+    static final class Record {
+        final String key;
+        final Object value;
+        final long expireAt;
+
+        Record(String key, Object value, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * A value as it is stored on disk, not yet decoded.
+     */
+    static final class Encoded {
+        final byte[] bytes;
+
+        Encoded(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    interface Sink {
+        void put(String key, Object value, long expireAt);
+
+        void remove(String key);
+    }
+
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final SaSerializerTemplateForBinary codec = new SaSerializerTemplateForBinary();
+
+    private FileChannel log;
+    private long generation;
+    private boolean hasSnapshot;
+    private long snapshotBytes;
+    private long logBytes;
+
+    private long fullWrites;
+    private long appends;
+    private final Map<String, Object> lastRestore = new LinkedHashMap<>();
+
+    public MemorySnapshotStore(Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        this.snapshotFile = directory.resolve("sessions.snap");
+        this.logFile = directory.resolve("sessions.log");
+    }
+
+    /**
+     * Loads the snapshot and replays the matching log into {@code sink}, skipping everything that
+     * has expired at {@code now}.
+     */
+    synchronized void load(long now, Sink sink) throws IOException {
+        long started = System.nanoTime();
+        long[] counts = new long[2];
+        if (Files.exists(snapshotFile)) {
+            try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (readHeader(buffer)) {
+                    generation = buffer.getLong(8);
+                    hasSnapshot = true;
+                    snapshotBytes = channel.size();
+                    replay(buffer, now, sink, false, counts);
+                }
+            }
+        }
+
+        long logEnd = -1;
+        if (hasSnapshot && Files.exists(logFile)) {
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (readHeader(buffer) && buffer.getLong(8) == generation) {
+                    logEnd = replay(buffer, now, sink, true, counts);
+                }
+            }
+        }
+        if (hasSnapshot) {
+            openLog(logEnd);
+        }
+
+        lastRestore.put("loaded", counts[0]);
+        lastRestore.put("skippedExpired", counts[1]);
+        lastRestore.put("tookMs", (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Encodes a live value. The dao calls this while it still holds the entry's stripe lock, so the
+     * bytes reflect one consistent state of the value rather than whatever it holds by the time the
+     * round is written out.
+     */
+    Encoded encode(Object value) {
+        return value instanceof Encoded ? (Encoded) value : new Encoded(codec.objectToBytes(value));
+    }
+
+    Object decode(Encoded value) {
+        return codec.bytesToObject(value.bytes);
+    }
+
+    boolean shouldCompact() {
+        return !hasSnapshot || logBytes > Math.max(MIN_COMPACT_BYTES, snapshotBytes);
+    }
+
+    synchronized void writeFull(List<Record> records) throws IOException {
+        List<byte[][]> encoded = encode(records);
+        long size = HEADER_BYTES + sizeOf(encoded);
+        long nextGeneration = generation + 1;
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            writeHeader(buffer, nextGeneration);
+            write(buffer, records, encoded);
+            buffer.force();
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        generation = nextGeneration;
+        hasSnapshot = true;
+        snapshotBytes = size;
+        fullWrites++;
+
+        closeLog();
+        openLog(-1);
+    }
+
+    synchronized void append(List<Record> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<byte[][]> encoded = encode(records);
+        long size = sizeOf(encoded);
+        MappedByteBuffer buffer = log.map(FileChannel.MapMode.READ_WRITE, logBytes, size);
+        write(buffer, records, encoded);
+        buffer.force();
+        logBytes += size;
+        appends++;
+    }
+
+    synchronized void close() {
+        closeLog();
+    }
+
+    synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("generation", generation);
+        stats.put("snapshotBytes", snapshotBytes);
+        stats.put("logBytes", logBytes);
+        stats.put("fullWrites", fullWrites);
+        stats.put("appends", appends);
+        stats.put("lastRestore", new LinkedHashMap<>(lastRestore));
+        return stats;
+    }
+
+    private long replay(ByteBuffer buffer, long now, Sink sink, boolean isLog, long[] counts) {
+        buffer.position(HEADER_BYTES);
+        int end = HEADER_BYTES;
+        try {
+            while (buffer.remaining() > 0) {
+                byte type = buffer.get();
+                if (type == DELETE) {
+                    String key = readKey(buffer);
+                    sink.remove(key);
+                } else if (type == PUT) {
+                    long expireAt = buffer.getLong();
+                    if (expireAt <= now) {
+                        if (isLog) {
+                            sink.remove(readKey(buffer));
+                        } else {
+                            skip(buffer);
+                        }
+                        skip(buffer);
+                        counts[1]++;
+                    } else {
+                        String key = readKey(buffer);
+                        byte[] value = new byte[buffer.getInt()];
+                        buffer.get(value);
+                        sink.put(key, new Encoded(value), expireAt);
+                        counts[0]++;
+                    }
+                } else {
+                    break;
+                }
+                end = buffer.position();
+            }
+        } catch (RuntimeException ex) {
+            // torn or corrupt tail: keep everything up to the last complete record
+        }
+        return end;
+    }
+
+    private List<byte[][]> encode(List<Record> records) {
+        List<byte[][]> encoded = new ArrayList<>(records.size());
+        for (Record record : records) {
+            byte[] key = record.key.getBytes(StandardCharsets.UTF_8);
+            byte[] value;
+            if (record.value == null) {
+                value = null;
+            } else if (record.value instanceof Encoded) {
+                value = ((Encoded) record.value).bytes;
+            } else {
+                value = codec.objectToBytes(record.value);
+            }
+            encoded.add(new byte[][]{key, value});
+        }
+        return encoded;
+    }
+
+    private static long sizeOf(List<byte[][]> encoded) {
+        long size = 0;
+        for (byte[][] record : encoded) {
+            size += 1 + 4 + record[0].length;
+            if (record[1] != null) {
+                size += 8 + 4 + record[1].length;
+            }
+        }
+        return size;
+    }
+
+    private static void write(ByteBuffer buffer, List<Record> records, List<byte[][]> encoded) {
+        for (int i = 0; i < records.size(); i++) {
+            byte[][] record = encoded.get(i);
+            if (record[1] == null) {
+                buffer.put(DELETE);
+                buffer.putInt(record[0].length).put(record[0]);
+            } else {
+                buffer.put(PUT);
+                buffer.putLong(records.get(i).expireAt);
+                buffer.putInt(record[0].length).put(record[0]);
+                buffer.putInt(record[1].length).put(record[1]);
+            }
+        }
+    }
+
+    private static String readKey(ByteBuffer buffer) {
+        byte[] key = new byte[buffer.getInt()];
+        buffer.get(key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private static void skip(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    private static void writeHeader(ByteBuffer buffer, long generation) {
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(generation).putLong(System.currentTimeMillis());
+    }
+
+    private static boolean readHeader(ByteBuffer buffer) {
+        return buffer.capacity() >= HEADER_BYTES && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION;
+    }
+
+    /**
+     * @param end length of the valid part of an existing log, or {@code -1} to start a fresh one
+     */
+    private void openLog(long end) throws IOException {
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (end < 0) {
+            log.truncate(0);
+            MappedByteBuffer buffer = log.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            writeHeader(buffer, generation);
+            buffer.force();
+            end = HEADER_BYTES;
+        }
+        log.truncate(end);
+        logBytes = end;
+    }
+
+    private void closeLog() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException ignored) {
+                // nothing left to flush, every append was forced
+            }
+            log = null;
+        }
+    }
+}
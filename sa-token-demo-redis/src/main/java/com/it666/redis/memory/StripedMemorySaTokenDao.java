@@ -0,0 +1,457 @@
+package com.it666.redis.memory;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.dao.auto.SaTokenDaoByStringFollowObject;
+import cn.dev33.satoken.util.SaFoxUtil;
+import com.it666.redis.dao.StorageStats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory dao for single-node deployments ({@code demo.storage-mode=memory}), replacing
+ * {@code SaTokenDaoDefaultImpl}'s pair of concurrent maps and its periodic full scan.
+ * <ul>
+ *     <li>Keys are spread over a power-of-two number of stripes, each a plain map behind its own lock,
+ *     so threads working on different keys rarely meet. The expiry is a primitive field on the entry
+ *     instead of a boxed value in a second map.</li>
+ *     <li>Each stripe owns a {@link TimingWheel}; one daemon thread ticks every wheel once per second
+ *     and removes exactly the entries that are due. Reads still check the exact expiry.</li>
+ *     <li>The number of entries is bounded; a full stripe evicts its least recently used entry.</li>
+ * </ul>
+ * Objects are stored by reference, like the default implementation.
+ * <p>
+ * With a {@link MemorySnapshotStore} the dao survives restarts: it is restored from the store in
+ * {@link #init()} (values stay encoded until first read), and every {@code snapshotIntervalMillis} the keys changed since the last round are
+ * appended to the store's log (or, once the log outgrows the snapshot, everything is compacted into a
+ * new snapshot).
+ */
+public class StripedMemorySaTokenDao implements SaTokenDaoByStringFollowObject, StorageStats {
+
+    private static final long NEVER = Long.MAX_VALUE;
+    private static final long TICK_MILLIS = 1000;
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final long maxEntries;
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder wheelExpirations = new LongAdder();
+    private final LongAdder readExpirations = new LongAdder();
+
+    private final MemorySnapshotStore snapshotStore;
+    private final long snapshotIntervalMillis;
+    private final LongAdder snapshotFailures = new LongAdder();
+    private final LongAdder decodeFailures = new LongAdder();
+    private final LongAdder encodeFailures = new LongAdder();
+    private boolean forceFull;
+
+    private ScheduledExecutorService ticker;
+
+    public StripedMemorySaTokenDao(long maxEntries, int stripes) {
+        this(maxEntries, stripes, null, 0);
+    }
+
+    /**
+     * @param maxEntries             upper bound on live entries, split evenly over the stripes
+     * @param stripes                number of stripes, rounded up to a power of two; {@code <= 0} picks 4 per core
+     * @param snapshotStore          where to persist the entries, or {@code null} to keep them in memory only
+     * @param snapshotIntervalMillis how often changes are written to {@code snapshotStore}
+     */
+    public StripedMemorySaTokenDao(long maxEntries, int stripes, MemorySnapshotStore snapshotStore,
+                                   long snapshotIntervalMillis) {
+        int count = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors() * 4;
+        count = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+        this.stripes = new Stripe[count];
+        this.mask = count - 1;
+        this.maxEntries = maxEntries;
+        this.snapshotStore = snapshotStore;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        int perStripe = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxEntries / count));
+        long tick = System.currentTimeMillis() / TICK_MILLIS;
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe(perStripe, tick);
+        }
+    }
+
+    @Override
+    public Object getObject(String key) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            Entry entry = stripe.live(key, System.currentTimeMillis());
+            if (entry == null) {
+                return null;
+            }
+            if (entry.value instanceof MemorySnapshotStore.Encoded) {
+                // restored from a snapshot and not read since
+                try {
+                    entry.value = snapshotStore.decode((MemorySnapshotStore.Encoded) entry.value);
+                } catch (RuntimeException ex) {
+                    // an unreadable record would fail every read; drop it as if it had expired
+                    stripe.map.remove(key);
+                    stripe.wheel.unschedule(entry);
+                    stripe.touch(key);
+                    decodeFailures.increment();
+                    return null;
+                }
+            }
+            return entry.value;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getObject(String key, Class<T> classType) {
+        return (T) getObject(key);
+    }
+
+    @Override
+    public void setObject(String key, Object object, long timeout) {
+        if (timeout == 0 || timeout <= SaTokenDao.NOT_VALUE_EXPIRE) {
+            return;
+        }
+        long expireAt = expireAt(timeout, System.currentTimeMillis());
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            Entry entry = stripe.map.get(key);
+            if (entry == null) {
+                entry = new Entry(key);
+                stripe.map.put(key, entry);
+            }
+            entry.value = object;
+            stripe.expireAt(entry, expireAt);
+            stripe.touch(key);
+        }
+    }
+
+    @Override
+    public void updateObject(String key, Object object) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            Entry entry = stripe.live(key, System.currentTimeMillis());
+            if (entry != null) {
+                entry.value = object;
+                stripe.touch(key);
+            }
+        }
+    }
+
+    @Override
+    public void deleteObject(String key) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            Entry entry = stripe.map.remove(key);
+            if (entry != null) {
+                stripe.wheel.unschedule(entry);
+                stripe.touch(key);
+            }
+        }
+    }
+
+    @Override
+    public long getObjectTimeout(String key) {
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            Entry entry = stripe.live(key, now);
+            if (entry == null) {
+                return SaTokenDao.NOT_VALUE_EXPIRE;
+            }
+            return entry.expireAt == NEVER ? SaTokenDao.NEVER_EXPIRE : (entry.expireAt - now) / 1000;
+        }
+    }
+
+    @Override
+    public void updateObjectTimeout(String key, long timeout) {
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            Entry entry = stripe.live(key, now);
+            if (entry != null) {
+                stripe.expireAt(entry, expireAt(timeout, now));
+                stripe.touch(key);
+            }
+        }
+    }
+
+    @Override
+    public List<String> searchData(String prefix, String keyword, int start, int size, boolean sortType) {
+        long now = System.currentTimeMillis();
+        List<String> keys = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Entry entry : stripe.map.values()) {
+                    if (entry.expireAt > now) {
+                        keys.add(entry.key);
+                    }
+                }
+            }
+        }
+        return SaFoxUtil.searchList(keys, prefix, keyword, start, size, sortType);
+    }
+
+    @Override
+    public void init() {
+        if (snapshotStore != null) {
+            restore();
+        }
+        ticker = Executors.newScheduledThreadPool(snapshotStore == null ? 1 : 2, runnable -> {
+            Thread thread = new Thread(runnable, "sa-token-memory-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        if (snapshotStore != null) {
+            ticker.scheduleWithFixedDelay(this::persistQuietly, snapshotIntervalMillis, snapshotIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (ticker != null) {
+            ticker.shutdown();
+            try {
+                ticker.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (snapshotStore != null) {
+            persist();
+            snapshotStore.close();
+        }
+    }
+
+    /**
+     * Writes the changes since the last call to the snapshot store, compacting when the log has
+     * grown larger than the snapshot.
+     * <p>
+     * A value that cannot be encoded is counted and left out (written as a deletion in the log)
+     * instead of failing the round. If the write itself fails, the keys of the round are marked dirty
+     * again and the next round is a full snapshot, so nothing is lost from disk that is still in memory.
+     */
+    public synchronized void persist() {
+        long now = System.currentTimeMillis();
+        boolean full = forceFull || snapshotStore.shouldCompact();
+        List<MemorySnapshotStore.Record> records = new ArrayList<>();
+        List<List<String>> taken = new ArrayList<>(stripes.length);
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                // values are encoded before the lock is released: a session changed by a request
+                // right after this point must not be written half old, half new
+                if (full) {
+                    for (Entry entry : stripe.map.values()) {
+                        if (entry.expireAt > now) {
+                            MemorySnapshotStore.Encoded value = encodeQuietly(entry.value);
+                            if (value != null) {
+                                records.add(new MemorySnapshotStore.Record(entry.key, value, entry.expireAt));
+                            }
+                        }
+                    }
+                } else {
+                    for (String key : stripe.dirty) {
+                        Entry entry = stripe.map.get(key);
+                        MemorySnapshotStore.Encoded value = entry == null ? null : encodeQuietly(entry.value);
+                        records.add(value == null
+                                ? new MemorySnapshotStore.Record(key, null, 0)
+                                : new MemorySnapshotStore.Record(key, value, entry.expireAt));
+                    }
+                }
+                taken.add(new ArrayList<>(stripe.dirty));
+                stripe.dirty.clear();
+            }
+        }
+        boolean done = false;
+        try {
+            if (full) {
+                snapshotStore.writeFull(records);
+            } else {
+                snapshotStore.append(records);
+            }
+            done = true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            // after a failure the log may end in a partly written round: start over from a full snapshot
+            forceFull = !done;
+            if (!done) {
+                for (int i = 0; i < stripes.length; i++) {
+                    synchronized (stripes[i]) {
+                        stripes[i].dirty.addAll(taken.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private MemorySnapshotStore.Encoded encodeQuietly(Object value) {
+        try {
+            return snapshotStore.encode(value);
+        } catch (RuntimeException ex) {
+            encodeFailures.increment();
+            return null;
+        }
+    }
+
+    private void persistQuietly() {
+        try {
+            persist();
+        } catch (RuntimeException ex) {
+            // persist() has already kept the round's changes for the next attempt
+            snapshotFailures.increment();
+        }
+    }
+
+    private void restore() {
+        try {
+            snapshotStore.load(System.currentTimeMillis(), new MemorySnapshotStore.Sink() {
+                @Override
+                public void put(String key, Object value, long expireAt) {
+                    Stripe stripe = stripe(key);
+                    Entry entry = new Entry(key);
+                    entry.value = value;
+                    stripe.map.put(key, entry);
+                    stripe.expireAt(entry, expireAt);
+                }
+
+                @Override
+                public void remove(String key) {
+                    Stripe stripe = stripe(key);
+                    Entry entry = stripe.map.remove(key);
+                    if (entry != null) {
+                        stripe.wheel.unschedule(entry);
+                    }
+                }
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Advances every stripe's wheel to the current second, dropping the entries that expired.
+     */
+    public void tick() {
+        long nowTick = System.currentTimeMillis() / TICK_MILLIS;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.wheel.advance(nowTick, node -> {
+                    stripe.map.remove(((Entry) node).key);
+                    wheelExpirations.increment();
+                });
+            }
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.map.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("stripes", stripes.length);
+        stats.put("entries", size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("evictions", evictions.sum());
+        stats.put("wheelExpirations", wheelExpirations.sum());
+        stats.put("readExpirations", readExpirations.sum());
+        if (snapshotStore != null) {
+            Map<String, Object> snapshot = snapshotStore.stats();
+            snapshot.put("failures", snapshotFailures.sum());
+            snapshot.put("decodeFailures", decodeFailures.sum());
+            snapshot.put("encodeFailures", encodeFailures.sum());
+            stats.put("snapshot", snapshot);
+        }
+        return stats;
+    }
+
+    private Stripe stripe(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    private static long expireAt(long timeout, long now) {
+        return timeout == SaTokenDao.NEVER_EXPIRE ? NEVER : now + timeout * 1000;
+    }
+
+    private static final class Entry extends TimingWheel.Node {
+        final String key;
+        Object value;
+        long expireAt;
+
+        Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    private final class Stripe {
+        final TimingWheel wheel;
+        final LinkedHashMap<String, Entry> map;
+        final Set<String> dirty = new HashSet<>();
+
+        Stripe(int capacity, long tick) {
+            this.wheel = new TimingWheel(tick);
+            this.map = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() <= capacity) {
+                        return false;
+                    }
+                    wheel.unschedule(eldest.getValue());
+                    touch(eldest.getKey());
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * The entry for {@code key} if it exists and has not expired; an expired entry is removed.
+         */
+        Entry live(String key, long now) {
+            Entry entry = map.get(key);
+            if (entry != null && entry.expireAt <= now) {
+                map.remove(key);
+                wheel.unschedule(entry);
+                readExpirations.increment();
+                return null;
+            }
+            return entry;
+        }
+
+        void touch(String key) {
+            if (snapshotStore != null) {
+                dirty.add(key);
+            }
+        }
+
+        void expireAt(Entry entry, long expireAt) {
+            entry.expireAt = expireAt;
+            if (expireAt == NEVER) {
+                wheel.unschedule(entry);
+            } else {
+                // round up so the wheel never drops an entry before its exact expiry
+                entry.expireTick = (expireAt + TICK_MILLIS - 1) / TICK_MILLIS;
+                wheel.schedule(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.it666.redis.memory;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel with one-second ticks: five levels of 64 slots cover about 34 years,
+ * so scheduling and cancelling are O(1) and each tick only touches the entries that are due
+ * (plus the occasional cascade of a coarser slot), never the whole key set.
+ * <p>
+ * Entries are linked into the slots intrusively through {@link Node}. Not thread-safe: every
+ * wheel is owned by one stripe of {@link StripedMemorySaTokenDao} and used under its lock.
+ */
+final class TimingWheel {
+
+    private static final int LEVELS = 5;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    static class Node {
+        long expireTick;
+        Node prev;
+        Node next;
+
+        boolean isScheduled() {
+            return prev != null;
+        }
+    }
+
+    private final Node[][] slots = new Node[LEVELS][SLOTS];
+    private long currentTick;
+
+    TimingWheel(long currentTick) {
+        this.currentTick = currentTick;
+        for (Node[] level : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                Node sentinel = new Node();
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                level[i] = sentinel;
+            }
+        }
+    }
+
+    void schedule(Node node) {
+        if (node.isScheduled()) {
+            unschedule(node);
+        }
+        long delta = node.expireTick - currentTick;
+        long placeAt = node.expireTick;
+        if (delta <= 0) {
+            delta = 1;
+            placeAt = currentTick + 1;
+        } else if (delta >= SPAN) {
+            delta = SPAN - 1;
+            placeAt = currentTick + SPAN - 1;
+        }
+        int level = (63 - Long.numberOfLeadingZeros(delta)) / SLOT_BITS;
+        link(slots[level][(int) (placeAt >>> (SLOT_BITS * level)) & SLOT_MASK], node);
+    }
+
+    void unschedule(Node node) {
+        if (node.isScheduled()) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    /**
+     * Advances the wheel to {@code nowTick}, handing every entry whose tick has passed to {@code expired}
+     * (already unlinked).
+     */
+    void advance(long nowTick, Consumer<Node> expired) {
+        while (currentTick < nowTick) {
+            long tick = ++currentTick;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    drain(slots[level][(int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK], tick, expired);
+                }
+            }
+            drain(slots[0][(int) tick & SLOT_MASK], tick, expired);
+        }
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    private void drain(Node sentinel, long tick, Consumer<Node> expired) {
+        Node node = sentinel.next;
+        sentinel.next = sentinel;
+        sentinel.prev = sentinel;
+        while (node != sentinel) {
+            Node next = node.next;
+            node.prev = null;
+            node.next = null;
+            if (node.expireTick <= tick) {
+                expired.accept(node);
+            } else {
+                schedule(node);
+            }
+            node = next;
+        }
+    }
+
+    private static void link(Node sentinel, Node node) {
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+}
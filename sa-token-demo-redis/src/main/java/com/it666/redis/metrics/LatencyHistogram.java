@@ -0,0 +1,164 @@
+package com.it666.redis.metrics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolling latency histogram with HDR-style log-linear buckets.
+ * <p>
+ * Values are bucketed by power of two, each power split into 16 linear sub-buckets, so any
+ * recorded value is reported with at most 1/16 (6.25%) relative error over the full {@code long}
+ * range with a fixed ~1k buckets. The window is a ring of {@code slices} sub-histograms; the
+ * slice a value lands in is chosen by wall-clock time and a slice is cleared when it is reused,
+ * so a snapshot covers the last {@code window} only.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long sliceMillis;
+    private final long[][] counts;
+    private final long[] maxima;
+    private final long[] epochs;
+
+    public LatencyHistogram(long windowMillis, int slices) {
+        this.sliceMillis = Math.max(1, windowMillis / slices);
+        this.counts = new long[slices][BUCKETS];
+        this.maxima = new long[slices];
+        this.epochs = new long[slices];
+    }
+
+    public void record(long nanos) {
+        record(nanos, System.currentTimeMillis());
+    }
+
+    synchronized void record(long nanos, long nowMillis) {
+        if (nanos < 0) {
+            return;
+        }
+        int slice = slice(nowMillis);
+        counts[slice][bucket(nanos)]++;
+        maxima[slice] = Math.max(maxima[slice], nanos);
+    }
+
+    /**
+     * Count, p50, p90, p99 and max over the window, latencies in microseconds.
+     */
+    public Map<String, Object> snapshot() {
+        return snapshot(System.currentTimeMillis());
+    }
+
+    synchronized Map<String, Object> snapshot(long nowMillis) {
+        long[] merged = merge(nowMillis);
+        long total = total(merged);
+        long max = max(nowMillis);
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", total);
+        snapshot.put("p50Micros", micros(Math.min(max, percentile(merged, total, 0.50))));
+        snapshot.put("p90Micros", micros(Math.min(max, percentile(merged, total, 0.90))));
+        snapshot.put("p99Micros", micros(Math.min(max, percentile(merged, total, 0.99))));
+        snapshot.put("maxMicros", micros(max));
+        return snapshot;
+    }
+
+    /**
+     * The latency at {@code quantile} (1.0 for the maximum) over the window in nanoseconds, 0 if
+     * nothing was recorded.
+     */
+    public synchronized long valueAt(double quantile) {
+        long nowMillis = System.currentTimeMillis();
+        long max = max(nowMillis);
+        if (quantile >= 1.0) {
+            return max;
+        }
+        long[] merged = merge(nowMillis);
+        return Math.min(max, percentile(merged, total(merged), quantile));
+    }
+
+    private long[] merge(long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        long[] merged = new long[BUCKETS];
+        for (int s = 0; s < counts.length; s++) {
+            if (epoch - epochs[s] >= counts.length) {
+                continue;
+            }
+            for (int b = 0; b < BUCKETS; b++) {
+                merged[b] += counts[s][b];
+            }
+        }
+        return merged;
+    }
+
+    private long max(long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        long max = 0;
+        for (int s = 0; s < counts.length; s++) {
+            if (epoch - epochs[s] < counts.length) {
+                max = Math.max(max, maxima[s]);
+            }
+        }
+        return max;
+    }
+
+    private static long total(long[] merged) {
+        long total = 0;
+        for (long count : merged) {
+            total += count;
+        }
+        return total;
+    }
+
+    private int slice(long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        int slice = (int) (epoch % counts.length);
+        if (epochs[slice] != epoch) {
+            Arrays.fill(counts[slice], 0);
+            maxima[slice] = 0;
+            epochs[slice] = epoch;
+        }
+        return slice;
+    }
+
+    private static long percentile(long[] merged, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int b = 0; b < merged.length; b++) {
+            seen += merged[b];
+            if (seen >= rank) {
+                return highestValueIn(b);
+            }
+        }
+        return highestValueIn(merged.length - 1);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+
+    private static double micros(long nanos) {
+        return Math.round(nanos / (double) TimeUnit.MICROSECONDS.toNanos(1) * 10) / 10.0;
+    }
+}
@@ -0,0 +1,415 @@
+package com.it666.redis.metrics;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.session.SaSession;
+import com.it666.redis.dao.DelegatingSaTokenDao;
+import com.it666.redis.dao.SessionFieldStore;
+import com.it666.redis.dao.StorageStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Outermost layer that measures every dao call as Sa-Token makes it ({@code demo.metrics.enabled=true}):
+ * count, errors, payload bytes and a rolling {@link LatencyHistogram}, per operation and per key
+ * category ({@code <token-name>:<login-type>:<category>:...}). Single-field session writes
+ * ({@code redis-hash} mode) are forwarded to the {@link SessionFieldStore} below and measured as
+ * {@code setSessionField} / {@code deleteSessionField}.
+ * <p>
+ * Payload bytes are the string values passed in or returned, plus whatever the serializer produces or
+ * parses while an object or session call is running ({@link MeteredSerializerTemplate}), so with a
+ * string-backed store a session call reports the size of the stored session. Memory modes keep
+ * objects as they are and report no payload for them.
+ * <p>
+ * Stats for an operation/category pair are created on first use. As a {@link MeterBinder} they are
+ * published to Micrometer as {@code satoken.dao.calls}, {@code satoken.dao.errors},
+ * {@code satoken.dao.payload} and {@code satoken.dao.latency} (p50, p99 and max gauges over the window).
+ */
+public class MeteredSaTokenDao extends DelegatingSaTokenDao implements SessionFieldStore, StorageStats, MeterBinder {
+
+    enum Operation {
+        GET("get"),
+        SET("set"),
+        UPDATE("update"),
+        DELETE("delete"),
+        GET_TIMEOUT("getTimeout"),
+        UPDATE_TIMEOUT("updateTimeout"),
+        GET_OBJECT("getObject"),
+        SET_OBJECT("setObject"),
+        UPDATE_OBJECT("updateObject"),
+        DELETE_OBJECT("deleteObject"),
+        GET_OBJECT_TIMEOUT("getObjectTimeout"),
+        UPDATE_OBJECT_TIMEOUT("updateObjectTimeout"),
+        GET_SESSION("getSession"),
+        SET_SESSION("setSession"),
+        UPDATE_SESSION("updateSession"),
+        DELETE_SESSION("deleteSession"),
+        GET_SESSION_TIMEOUT("getSessionTimeout"),
+        UPDATE_SESSION_TIMEOUT("updateSessionTimeout"),
+        SEARCH_DATA("searchData"),
+        SET_SESSION_FIELD("setSessionField"),
+        DELETE_SESSION_FIELD("deleteSessionField");
+
+        final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+    }
+
+    /** the third key segment; anything else is {@code other} */
+    static final String[] CATEGORIES = {"token", "session", "token-session", "last-active", "safe", "disable", "other"};
+
+    private static final int OTHER = CATEGORIES.length - 1;
+    private static final int WINDOW_SLICES = 6;
+    private static final double[] QUANTILES = {0.5, 0.99, 1.0};
+
+    /** serialized bytes seen by {@link MeteredSerializerTemplate} on this thread, read before and after each call */
+    private static final ThreadLocal<long[]> PAYLOAD = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final long windowMillis;
+    private final AtomicReferenceArray<OperationStats> stats =
+            new AtomicReferenceArray<>(Operation.values().length * CATEGORIES.length);
+    private volatile MeterRegistry registry;
+
+    public MeteredSaTokenDao(SaTokenDao delegate, long windowMillis) {
+        super(delegate);
+        this.windowMillis = windowMillis;
+    }
+
+    static void addPayload(long bytes) {
+        PAYLOAD.get()[0] += bytes;
+    }
+
+    @Override
+    public String get(String key) {
+        return timed(Operation.GET, key, () -> payload(delegate.get(key)));
+    }
+
+    @Override
+    public void set(String key, String value, long timeout) {
+        timed(Operation.SET, key, () -> {
+            delegate.set(key, payload(value), timeout);
+            return null;
+        });
+    }
+
+    @Override
+    public void update(String key, String value) {
+        timed(Operation.UPDATE, key, () -> {
+            delegate.update(key, payload(value));
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(String key) {
+        timed(Operation.DELETE, key, () -> {
+            delegate.delete(key);
+            return null;
+        });
+    }
+
+    @Override
+    public long getTimeout(String key) {
+        return timed(Operation.GET_TIMEOUT, key, () -> delegate.getTimeout(key));
+    }
+
+    @Override
+    public void updateTimeout(String key, long timeout) {
+        timed(Operation.UPDATE_TIMEOUT, key, () -> {
+            delegate.updateTimeout(key, timeout);
+            return null;
+        });
+    }
+
+    @Override
+    public Object getObject(String key) {
+        return timed(Operation.GET_OBJECT, key, () -> delegate.getObject(key));
+    }
+
+    @Override
+    public <T> T getObject(String key, Class<T> classType) {
+        return timed(Operation.GET_OBJECT, key, () -> delegate.getObject(key, classType));
+    }
+
+    @Override
+    public void setObject(String key, Object object, long timeout) {
+        timed(Operation.SET_OBJECT, key, () -> {
+            delegate.setObject(key, object, timeout);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateObject(String key, Object object) {
+        timed(Operation.UPDATE_OBJECT, key, () -> {
+            delegate.updateObject(key, object);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteObject(String key) {
+        timed(Operation.DELETE_OBJECT, key, () -> {
+            delegate.deleteObject(key);
+            return null;
+        });
+    }
+
+    @Override
+    public long getObjectTimeout(String key) {
+        return timed(Operation.GET_OBJECT_TIMEOUT, key, () -> delegate.getObjectTimeout(key));
+    }
+
+    @Override
+    public void updateObjectTimeout(String key, long timeout) {
+        timed(Operation.UPDATE_OBJECT_TIMEOUT, key, () -> {
+            delegate.updateObjectTimeout(key, timeout);
+            return null;
+        });
+    }
+
+    @Override
+    public SaSession getSession(String sessionId) {
+        return timed(Operation.GET_SESSION, sessionId, () -> delegate.getSession(sessionId));
+    }
+
+    @Override
+    public void setSession(SaSession session, long timeout) {
+        timed(Operation.SET_SESSION, session.getId(), () -> {
+            delegate.setSession(session, timeout);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateSession(SaSession session) {
+        timed(Operation.UPDATE_SESSION, session.getId(), () -> {
+            delegate.updateSession(session);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        timed(Operation.DELETE_SESSION, sessionId, () -> {
+            delegate.deleteSession(sessionId);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean storesSessionFields() {
+        return SessionFieldStore.find(delegate) != null;
+    }
+
+    @Override
+    public void setSessionField(String sessionId, String key, Object value) {
+        timed(Operation.SET_SESSION_FIELD, sessionId, () -> {
+            SessionFieldStore.find(delegate).setSessionField(sessionId, key, value);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteSessionField(String sessionId, String key) {
+        timed(Operation.DELETE_SESSION_FIELD, sessionId, () -> {
+            SessionFieldStore.find(delegate).deleteSessionField(sessionId, key);
+            return null;
+        });
+    }
+
+    @Override
+    public long getSessionTimeout(String sessionId) {
+        return timed(Operation.GET_SESSION_TIMEOUT, sessionId, () -> delegate.getSessionTimeout(sessionId));
+    }
+
+    @Override
+    public void updateSessionTimeout(String sessionId, long timeout) {
+        timed(Operation.UPDATE_SESSION_TIMEOUT, sessionId, () -> {
+            delegate.updateSessionTimeout(sessionId, timeout);
+            return null;
+        });
+    }
+
+    @Override
+    public List<String> searchData(String prefix, String keyword, int start, int size, boolean sortType) {
+        return timed(Operation.SEARCH_DATA, prefix, () -> delegate.searchData(prefix, keyword, start, size, sortType));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        for (int i = 0; i < stats.length(); i++) {
+            OperationStats existing = stats.get(i);
+            if (existing != null) {
+                existing.register(registry);
+            }
+        }
+    }
+
+    /**
+     * Per operation, per category: {@code count} and {@code errors} since start, {@code errorRate},
+     * {@code payloadBytes} and {@code avgPayloadBytes}, and the latency over the window.
+     */
+    @Override
+    public Map<String, Object> storageStats() {
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            Map<String, Object> categories = new LinkedHashMap<>();
+            for (int category = 0; category < CATEGORIES.length; category++) {
+                OperationStats entry = stats.get(index(operation, category));
+                if (entry != null) {
+                    categories.put(CATEGORIES[category], entry.snapshot());
+                }
+            }
+            if (!categories.isEmpty()) {
+                operations.put(operation.label, categories);
+            }
+        }
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("windowMillis", windowMillis);
+        snapshot.put("micrometer", registry != null);
+        snapshot.put("operations", operations);
+        return snapshot;
+    }
+
+    static int category(String key) {
+        if (key == null) {
+            return OTHER;
+        }
+        int first = key.indexOf(':');
+        int second = first < 0 ? -1 : key.indexOf(':', first + 1);
+        if (second < 0) {
+            return OTHER;
+        }
+        int end = key.indexOf(':', second + 1);
+        int length = (end < 0 ? key.length() : end) - second - 1;
+        for (int category = 0; category < OTHER; category++) {
+            if (CATEGORIES[category].length() == length && key.startsWith(CATEGORIES[category], second + 1)) {
+                return category;
+            }
+        }
+        return OTHER;
+    }
+
+    private <T> T timed(Operation operation, String key, Supplier<T> call) {
+        OperationStats entry = stats(operation, category(key));
+        long[] payload = PAYLOAD.get();
+        long payloadBefore = payload[0];
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } catch (RuntimeException ex) {
+            entry.errors.increment();
+            throw ex;
+        } finally {
+            entry.count.increment();
+            entry.payloadBytes.add(payload[0] - payloadBefore);
+            entry.latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private static String payload(String value) {
+        if (value != null) {
+            addPayload(utf8Length(value));
+        }
+        return value;
+    }
+
+    /**
+     * Encoded length without encoding; values are almost always ASCII.
+     */
+    static long utf8Length(String value) {
+        long bytes = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (Character.isHighSurrogate(c)) {
+                    // 4 bytes for the pair, 2 chars counted
+                    bytes += 2;
+                    i++;
+                } else {
+                    bytes += c < 0x800 ? 1 : 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private OperationStats stats(Operation operation, int category) {
+        int index = index(operation, category);
+        OperationStats entry = stats.get(index);
+        if (entry != null) {
+            return entry;
+        }
+        OperationStats created = new OperationStats(operation.label, CATEGORIES[category],
+                new LatencyHistogram(windowMillis, WINDOW_SLICES));
+        if (!stats.compareAndSet(index, null, created)) {
+            return stats.get(index);
+        }
+        MeterRegistry current = registry;
+        if (current != null) {
+            created.register(current);
+        }
+        return created;
+    }
+
+    private static int index(Operation operation, int category) {
+        return operation.ordinal() * CATEGORIES.length + category;
+    }
+
+    private static final class OperationStats {
+
+        private final String operation;
+        private final String category;
+        private final LatencyHistogram latency;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder payloadBytes = new LongAdder();
+
+        OperationStats(String operation, String category, LatencyHistogram latency) {
+            this.operation = operation;
+            this.category = category;
+            this.latency = latency;
+        }
+
+        void register(MeterRegistry registry) {
+            Tags tags = Tags.of("operation", operation, "category", category);
+            FunctionCounter.builder("satoken.dao.calls", count, LongAdder::sum).tags(tags).register(registry);
+            FunctionCounter.builder("satoken.dao.errors", errors, LongAdder::sum).tags(tags).register(registry);
+            FunctionCounter.builder("satoken.dao.payload", payloadBytes, LongAdder::sum)
+                    .baseUnit("bytes").tags(tags).register(registry);
+            for (double quantile : QUANTILES) {
+                TimeGauge.builder("satoken.dao.latency", latency, TimeUnit.NANOSECONDS, h -> h.valueAt(quantile))
+                        .tags(tags).tag("quantile", quantile >= 1.0 ? "max" : String.valueOf(quantile))
+                        .register(registry);
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            long calls = count.sum();
+            long failed = errors.sum();
+            long bytes = payloadBytes.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("count", calls);
+            snapshot.put("errors", failed);
+            snapshot.put("errorRate", calls == 0 ? 0.0 : (double) failed / calls);
+            snapshot.put("payloadBytes", bytes);
+            snapshot.put("avgPayloadBytes", calls == 0 ? 0 : bytes / calls);
+            snapshot.put("latency", latency.snapshot());
+            return snapshot;
+        }
+    }
+}
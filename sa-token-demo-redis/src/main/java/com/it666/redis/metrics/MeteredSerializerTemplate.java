@@ -0,0 +1,56 @@
+package com.it666.redis.metrics;
+
+import cn.dev33.satoken.serializer.SaSerializerTemplate;
+
+/**
+ * Adds the size of every string the wrapped serializer produces or parses to the payload of the
+ * {@link MeteredSaTokenDao} call running on the same thread. Wraps the outermost serializer, so the
+ * sizes are those of the stored strings (after compression, if it is on).
+ */
+public class MeteredSerializerTemplate implements SaSerializerTemplate {
+
+    private final SaSerializerTemplate delegate;
+
+    public MeteredSerializerTemplate(SaSerializerTemplate delegate) {
+        this.delegate = delegate;
+    }
+
+    public SaSerializerTemplate getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String objectToString(Object obj) {
+        String str = delegate.objectToString(obj);
+        if (str != null) {
+            MeteredSaTokenDao.addPayload(MeteredSaTokenDao.utf8Length(str));
+        }
+        return str;
+    }
+
+    @Override
+    public Object stringToObject(String str) {
+        if (str != null) {
+            MeteredSaTokenDao.addPayload(MeteredSaTokenDao.utf8Length(str));
+        }
+        return delegate.stringToObject(str);
+    }
+
+    @Override
+    public <T> T stringToObject(String str, Class<T> type) {
+        if (str != null) {
+            MeteredSaTokenDao.addPayload(MeteredSaTokenDao.utf8Length(str));
+        }
+        return delegate.stringToObject(str, type);
+    }
+
+    @Override
+    public byte[] objectToBytes(Object obj) {
+        return delegate.objectToBytes(obj);
+    }
+
+    @Override
+    public Object bytesToObject(byte[] bytes) {
+        return delegate.bytesToObject(bytes);
+    }
+}
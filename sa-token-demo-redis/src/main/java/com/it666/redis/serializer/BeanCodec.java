@@ -0,0 +1,110 @@
+package com.it666.redis.serializer;
+
+import cn.dev33.satoken.exception.SaTokenException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reflective field access for plain application objects such as {@code UserInfo}: fields are
+ * written as name/value pairs, so the format needs no schema and tolerates added or removed fields.
+ */
+final class BeanCodec {
+
+    private static final ClassValue<BeanCodec> CODECS = new ClassValue<>() {
+        @Override
+        protected BeanCodec computeValue(Class<?> type) {
+            return create(type);
+        }
+    };
+
+    private final Constructor<?> constructor;
+    private final Field[] fields;
+    private final Map<String, Field> fieldsByName;
+
+    private BeanCodec(Constructor<?> constructor, Field[] fields) {
+        this.constructor = constructor;
+        this.fields = fields;
+        this.fieldsByName = new HashMap<>(fields.length * 2);
+        for (Field field : fields) {
+            fieldsByName.putIfAbsent(field.getName(), field);
+        }
+    }
+
+    /**
+     * Returns the codec for {@code type}, or {@code null} if it is not a plain bean
+     * (JDK type, enum, abstract type or no no-arg constructor).
+     */
+    static BeanCodec forType(Class<?> type) {
+        return CODECS.get(type);
+    }
+
+    Field[] fields() {
+        return fields;
+    }
+
+    Object newInstance() {
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new SaTokenException(ex);
+        }
+    }
+
+    void set(Object bean, String name, Object value) {
+        Field field = fieldsByName.get(name);
+        if (field == null) {
+            return;
+        }
+        try {
+            field.set(bean, value);
+        } catch (IllegalAccessException | IllegalArgumentException ex) {
+            throw new SaTokenException("cannot assign field " + name + " of " + bean.getClass().getName(), ex);
+        }
+    }
+
+    static Object get(Field field, Object bean) {
+        try {
+            return field.get(bean);
+        } catch (IllegalAccessException ex) {
+            throw new SaTokenException(ex);
+        }
+    }
+
+    private static BeanCodec create(Class<?> type) {
+        String name = type.getName();
+        if (type.isArray() || type.isPrimitive() || type.isEnum() || type.isInterface()
+                || Modifier.isAbstract(type.getModifiers())
+                || name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")) {
+            return null;
+        }
+        Constructor<?> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException | RuntimeException ex) {
+            return null;
+        }
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (RuntimeException ex) {
+                    return null;
+                }
+                fields.add(field);
+            }
+        }
+        return new BeanCodec(constructor, fields.toArray(new Field[0]));
+    }
+}
@@ -0,0 +1,93 @@
+package com.it666.redis.serializer;
+
+import cn.dev33.satoken.exception.SaTokenException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cursor over a binary payload produced by {@link BinaryWriter}.
+ */
+final class BinaryReader {
+
+    private final byte[] buf;
+    private int pos;
+
+    BinaryReader(byte[] buf) {
+        this.buf = buf;
+    }
+
+    boolean hasRemaining() {
+        return pos < buf.length;
+    }
+
+    int readByte() {
+        check(1);
+        return buf[pos++] & 0xFF;
+    }
+
+    int readVarInt() {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SaTokenException("malformed varint at offset " + pos);
+    }
+
+    long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SaTokenException("malformed varlong at offset " + pos);
+    }
+
+    int readZigZagInt() {
+        int raw = readVarInt();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    long readZigZagLong() {
+        long raw = readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    long readFixedLong() {
+        check(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buf[pos++] & 0xFF);
+        }
+        return value;
+    }
+
+    byte[] readBytes() {
+        int length = readVarInt();
+        check(length);
+        byte[] bytes = new byte[length];
+        System.arraycopy(buf, pos, bytes, 0, length);
+        pos += length;
+        return bytes;
+    }
+
+    String readString() {
+        int length = readVarInt();
+        check(length);
+        String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    private void check(int length) {
+        if (length < 0 || pos + length > buf.length) {
+            throw new SaTokenException("truncated binary payload: need " + length + " bytes at offset " + pos);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.it666.redis.serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with varint / zig-zag primitives. Instances are reused per thread.
+ */
+final class BinaryWriter {
+
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private byte[] buf = new byte[256];
+    private int pos;
+
+    void reset() {
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[256];
+        }
+        pos = 0;
+    }
+
+    int size() {
+        return pos;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, pos);
+    }
+
+    String toLatin1String() {
+        return new String(buf, 0, pos, StandardCharsets.ISO_8859_1);
+    }
+
+    void writeByte(int b) {
+        ensure(1);
+        buf[pos++] = (byte) b;
+    }
+
+    void writeVarInt(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+    }
+
+    void writeZigZagInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    void writeZigZagLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeFixedLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[pos++] = (byte) (value >>> shift);
+        }
+    }
+
+    void writeBytes(byte[] bytes) {
+        writeVarInt(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    /**
+     * Length-prefixed UTF-8. ASCII-only strings (the common case for ids, tokens and
+     * timestamps) are copied in a single pass without an intermediate byte[]; the first
+     * non-ASCII char rewinds and falls back to {@link String#getBytes}.
+     */
+    void writeString(String value) {
+        int length = value.length();
+        int start = pos;
+        writeVarInt(length);
+        ensure(length);
+        // locals instead of fields so the JIT can keep the copy loop in registers
+        byte[] target = buf;
+        int offset = pos;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                pos = start;
+                writeBytes(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            target[offset + i] = (byte) c;
+        }
+        pos = offset + length;
+    }
+
+    private void ensure(int extra) {
+        if (pos + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + extra));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.it666.redis.serializer;
+
+import cn.dev33.satoken.exception.SaTokenException;
+import cn.dev33.satoken.serializer.SaSerializerTemplate;
+import com.it666.redis.dao.StorageStats;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate-compresses the strings of another serializer once they reach {@code thresholdBytes}
+ * ({@code demo.compression.enabled=true}).
+ * <p>
+ * A compressed value is the header char {@code \u0001} followed by the Base64 of the deflated UTF-8
+ * bytes. None of the serializers of this demo produce a string starting with that char (JSON,
+ * Base64 and hex are printable, the ISO-8859-1 forms start with {@code 0xAC} or {@code 0xB1}), so
+ * values written before compression was turned on, or left uncompressed because they were small
+ * or did not shrink, are read unchanged. The header is checked on every read, so the threshold can
+ * be changed at any time; turning the wrapper off entirely makes existing compressed values unreadable.
+ * <p>
+ * {@code objectToBytes}/{@code bytesToObject} are passed through: the Redis daos only use the string form.
+ */
+public class CompressingSerializerTemplate implements SaSerializerTemplate, StorageStats {
+
+    static final char HEADER = '\u0001';
+
+    private final SaSerializerTemplate delegate;
+    private final int thresholdBytes;
+    private final int level;
+
+    /** idle codecs; a zlib stream holds a few hundred KB of native memory, so they are shared rather than per thread */
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder incompressible = new LongAdder();
+    private final LongAdder originalBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final LongAdder decompressed = new LongAdder();
+
+    /**
+     * @param level Deflate level, 1 (fastest) to 9 (smallest)
+     */
+    public CompressingSerializerTemplate(SaSerializerTemplate delegate, int thresholdBytes, int level) {
+        this.delegate = delegate;
+        this.thresholdBytes = thresholdBytes;
+        this.level = level;
+    }
+
+    @Override
+    public String objectToString(Object obj) {
+        String str = delegate.objectToString(obj);
+        if (str == null) {
+            return null;
+        }
+        written.increment();
+        // a char is at most 3 UTF-8 bytes: most small values are ruled out without encoding them
+        if (str.length() * 3L < thresholdBytes) {
+            return str;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < thresholdBytes) {
+            return str;
+        }
+        String packed = compress(bytes);
+        if (packed == null) {
+            incompressible.increment();
+            return str;
+        }
+        compressed.increment();
+        originalBytes.add(bytes.length);
+        storedBytes.add(packed.length());
+        return packed;
+    }
+
+    @Override
+    public Object stringToObject(String str) {
+        return delegate.stringToObject(unpack(str));
+    }
+
+    @Override
+    public <T> T stringToObject(String str, Class<T> type) {
+        return delegate.stringToObject(unpack(str), type);
+    }
+
+    @Override
+    public byte[] objectToBytes(Object obj) {
+        return delegate.objectToBytes(obj);
+    }
+
+    @Override
+    public Object bytesToObject(byte[] bytes) {
+        return delegate.bytesToObject(bytes);
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        long in = originalBytes.sum();
+        long out = storedBytes.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("serializer", delegate.getClass().getSimpleName());
+        stats.put("thresholdBytes", thresholdBytes);
+        stats.put("level", level);
+        stats.put("written", written.sum());
+        stats.put("compressed", compressed.sum());
+        stats.put("incompressible", incompressible.sum());
+        stats.put("originalBytes", in);
+        stats.put("storedBytes", out);
+        // stored / original over the compressed values, Base64 and header included
+        stats.put("compressionRatio", in == 0 ? 1.0 : (double) out / in);
+        stats.put("decompressed", decompressed.sum());
+        return stats;
+    }
+
+    /**
+     * The header plus Base64 of the deflated bytes, or {@code null} if that would not be smaller
+     * than {@code bytes}.
+     */
+    private String compress(byte[] bytes) {
+        // 1 header char + 4 Base64 chars per 3 bytes must stay below the original size
+        int limit = (bytes.length - 2) / 4 * 3;
+        if (limit <= 0) {
+            return null;
+        }
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level);
+        }
+        byte[] out = new byte[limit];
+        int length = 0;
+        boolean finished;
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            finished = deflater.finished();
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+        if (!finished) {
+            return null;
+        }
+        return HEADER + Base64.getEncoder().encodeToString(length == out.length ? out : Arrays.copyOf(out, length));
+    }
+
+    private String unpack(String str) {
+        if (str == null || str.isEmpty() || str.charAt(0) != HEADER) {
+            return str;
+        }
+        byte[] data;
+        try {
+            data = Base64.getDecoder().decode(str.substring(1));
+        } catch (IllegalArgumentException ex) {
+            throw new SaTokenException("corrupt compressed value", ex);
+        }
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        byte[] out = new byte[Math.max(256, data.length * 4)];
+        int length = 0;
+        try {
+            inflater.setInput(data);
+            while (!inflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                int n = inflater.inflate(out, length, out.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new SaTokenException("truncated compressed value");
+                }
+                length += n;
+            }
+        } catch (DataFormatException ex) {
+            throw new SaTokenException("corrupt compressed value", ex);
+        } finally {
+            inflater.reset();
+            inflaters.offer(inflater);
+        }
+        decompressed.increment();
+        return new String(out, 0, length, StandardCharsets.UTF_8);
+    }
+}
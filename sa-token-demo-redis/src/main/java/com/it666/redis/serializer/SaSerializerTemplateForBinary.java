@@ -0,0 +1,362 @@
+package com.it666.redis.serializer;
+
+import cn.dev33.satoken.exception.SaTokenException;
+import cn.dev33.satoken.serializer.SaSerializerTemplate;
+import cn.dev33.satoken.session.SaSession;
+import cn.dev33.satoken.session.SaTerminalInfo;
+import cn.dev33.satoken.strategy.SaStrategy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact, schema-less binary serializer ({@code demo.serializer=binary}).
+ * <p>
+ * Every value is a one-byte tag followed by its payload; integers are zig-zag varints and
+ * strings are length-prefixed UTF-8. {@link SaSession} and {@link SaTerminalInfo} have dedicated
+ * encodings, plain application beans (e.g. {@code UserInfo}) are written as field name/value
+ * pairs, and any other {@link Serializable} falls back to embedded JDK serialization.
+ * <p>
+ * The string form maps every byte to one ISO-8859-1 char, the same trick as
+ * {@code jdk-iso-8859-1}, so it can be stored through {@code StringRedisTemplate}.
+ */
+public class SaSerializerTemplateForBinary implements SaSerializerTemplate {
+
+    static final int MAGIC = 0xB1;
+
+    static final int T_NULL = 0;
+    static final int T_STRING = 1;
+    static final int T_LONG = 2;
+    static final int T_INT = 3;
+    static final int T_TRUE = 4;
+    static final int T_FALSE = 5;
+    static final int T_DOUBLE = 6;
+    static final int T_LIST = 7;
+    static final int T_SET = 8;
+    static final int T_MAP = 9;
+    static final int T_STRING_ARRAY = 10;
+    static final int T_BYTES = 11;
+    static final int T_SESSION = 12;
+    static final int T_TERMINAL = 13;
+    static final int T_BEAN = 14;
+    static final int T_JDK = 15;
+
+    private static final ThreadLocal<BinaryWriter> WRITERS = ThreadLocal.withInitial(BinaryWriter::new);
+
+    @Override
+    public String objectToString(Object obj) {
+        if (obj == null) {
+            return null;
+        }
+        BinaryWriter writer = encode(obj);
+        String str = writer.toLatin1String();
+        writer.reset();
+        return str;
+    }
+
+    @Override
+    public Object stringToObject(String str) {
+        if (str == null) {
+            return null;
+        }
+        return bytesToObject(str.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Override
+    public byte[] objectToBytes(Object obj) {
+        if (obj == null) {
+            return null;
+        }
+        BinaryWriter writer = encode(obj);
+        byte[] bytes = writer.toByteArray();
+        writer.reset();
+        return bytes;
+    }
+
+    @Override
+    public Object bytesToObject(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        BinaryReader reader = new BinaryReader(bytes);
+        if (!reader.hasRemaining() || reader.readByte() != MAGIC) {
+            throw new SaTokenException("not a binary serializer payload");
+        }
+        return readValue(reader);
+    }
+
+    private BinaryWriter encode(Object obj) {
+        BinaryWriter writer = WRITERS.get();
+        writer.reset();
+        writer.writeByte(MAGIC);
+        writeValue(writer, obj);
+        return writer;
+    }
+
+    // ---------------------------------------------------------------- write
+
+    private void writeValue(BinaryWriter w, Object value) {
+        if (value == null) {
+            w.writeByte(T_NULL);
+        } else if (value instanceof String) {
+            w.writeByte(T_STRING);
+            w.writeString((String) value);
+        } else if (value instanceof Long) {
+            w.writeByte(T_LONG);
+            w.writeZigZagLong((Long) value);
+        } else if (value instanceof Integer) {
+            w.writeByte(T_INT);
+            w.writeZigZagInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            w.writeByte((Boolean) value ? T_TRUE : T_FALSE);
+        } else if (value instanceof Double) {
+            w.writeByte(T_DOUBLE);
+            w.writeFixedLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof SaSession) {
+            writeSession(w, (SaSession) value);
+        } else if (value instanceof SaTerminalInfo) {
+            writeTerminal(w, (SaTerminalInfo) value);
+        } else if (value instanceof List) {
+            w.writeByte(T_LIST);
+            writeElements(w, (List<?>) value);
+        } else if (value instanceof Set) {
+            w.writeByte(T_SET);
+            writeElements(w, (Set<?>) value);
+        } else if (value instanceof Map) {
+            w.writeByte(T_MAP);
+            writeEntries(w, (Map<?, ?>) value);
+        } else if (value instanceof String[]) {
+            String[] array = (String[]) value;
+            w.writeByte(T_STRING_ARRAY);
+            w.writeVarInt(array.length);
+            for (String element : array) {
+                writeValue(w, element);
+            }
+        } else if (value instanceof byte[]) {
+            w.writeByte(T_BYTES);
+            w.writeBytes((byte[]) value);
+        } else {
+            writeObject(w, value);
+        }
+    }
+
+    /**
+     * Writes a copy taken in one pass, so the count always matches the elements that follow even
+     * if another thread changes a concurrent collection meanwhile.
+     */
+    private void writeElements(BinaryWriter w, Collection<?> elements) {
+        Object[] copy = elements.toArray();
+        w.writeVarInt(copy.length);
+        for (Object element : copy) {
+            writeValue(w, element);
+        }
+    }
+
+    private void writeEntries(BinaryWriter w, Map<?, ?> map) {
+        Object[] copy = map.entrySet().toArray();
+        w.writeVarInt(copy.length);
+        for (Object element : copy) {
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) element;
+            writeValue(w, entry.getKey());
+            writeValue(w, entry.getValue());
+        }
+    }
+
+    private void writeSession(BinaryWriter w, SaSession session) {
+        w.writeByte(T_SESSION);
+        writeValue(w, session.getId());
+        writeValue(w, session.getType());
+        writeValue(w, session.getLoginType());
+        writeValue(w, session.getLoginId());
+        writeValue(w, session.getToken());
+        w.writeVarInt(session.getHistoryTerminalCount());
+        w.writeZigZagLong(session.getCreateTime());
+        writeEntries(w, session.getDataMap());
+        writeElements(w, session.terminalListCopy());
+    }
+
+    private void writeTerminal(BinaryWriter w, SaTerminalInfo terminal) {
+        w.writeByte(T_TERMINAL);
+        w.writeVarInt(terminal.getIndex());
+        writeValue(w, terminal.getTokenValue());
+        writeValue(w, terminal.getDeviceType());
+        writeValue(w, terminal.getDeviceId());
+        writeValue(w, terminal.getExtraData());
+        w.writeZigZagLong(terminal.getCreateTime());
+    }
+
+    private void writeObject(BinaryWriter w, Object value) {
+        BeanCodec codec = BeanCodec.forType(value.getClass());
+        if (codec != null) {
+            Field[] fields = codec.fields();
+            w.writeByte(T_BEAN);
+            w.writeString(value.getClass().getName());
+            w.writeVarInt(fields.length);
+            for (Field field : fields) {
+                w.writeString(field.getName());
+                writeValue(w, BeanCodec.get(field, value));
+            }
+            return;
+        }
+        if (!(value instanceof Serializable)) {
+            throw new SaTokenException("binary serializer cannot encode " + value.getClass().getName());
+        }
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(value);
+            oos.flush();
+            w.writeByte(T_JDK);
+            w.writeBytes(baos.toByteArray());
+        } catch (IOException ex) {
+            throw new SaTokenException(ex);
+        }
+    }
+
+    // ---------------------------------------------------------------- read
+
+    private Object readValue(BinaryReader r) {
+        int tag = r.readByte();
+        switch (tag) {
+            case T_NULL:
+                return null;
+            case T_STRING:
+                return r.readString();
+            case T_LONG:
+                return r.readZigZagLong();
+            case T_INT:
+                return r.readZigZagInt();
+            case T_TRUE:
+                return Boolean.TRUE;
+            case T_FALSE:
+                return Boolean.FALSE;
+            case T_DOUBLE:
+                return Double.longBitsToDouble(r.readFixedLong());
+            case T_LIST:
+                return readElements(r, new ArrayList<>());
+            case T_SET:
+                return readElements(r, new LinkedHashSet<>());
+            case T_MAP:
+                return readEntries(r, new LinkedHashMap<>());
+            case T_STRING_ARRAY: {
+                String[] array = new String[r.readVarInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = (String) readValue(r);
+                }
+                return array;
+            }
+            case T_BYTES:
+                return r.readBytes();
+            case T_SESSION:
+                return readSession(r);
+            case T_TERMINAL:
+                return readTerminal(r);
+            case T_BEAN:
+                return readBean(r);
+            case T_JDK:
+                return readJdk(r);
+            default:
+                throw new SaTokenException("unknown binary serializer tag " + tag);
+        }
+    }
+
+    private <C extends Collection<Object>> C readElements(BinaryReader r, C target) {
+        int size = r.readVarInt();
+        for (int i = 0; i < size; i++) {
+            target.add(readValue(r));
+        }
+        return target;
+    }
+
+    private <M extends Map<Object, Object>> M readEntries(BinaryReader r, M target) {
+        int size = r.readVarInt();
+        for (int i = 0; i < size; i++) {
+            target.put(readValue(r), readValue(r));
+        }
+        return target;
+    }
+
+    private SaSession readSession(BinaryReader r) {
+        SaSession session;
+        try {
+            session = SaStrategy.instance.sessionClassType.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new SaTokenException(ex);
+        }
+        session.setId((String) readValue(r));
+        session.setType((String) readValue(r));
+        session.setLoginType((String) readValue(r));
+        session.setLoginId(readValue(r));
+        session.setToken((String) readValue(r));
+        session.setHistoryTerminalCount(r.readVarInt());
+        session.setCreateTime(r.readZigZagLong());
+        int entries = r.readVarInt();
+        for (int i = 0; i < entries; i++) {
+            String key = (String) readValue(r);
+            Object value = readValue(r);
+            // the session's ConcurrentHashMap cannot hold nulls and never produced one
+            if (key != null && value != null) {
+                session.getDataMap().put(key, value);
+            }
+        }
+        int terminals = r.readVarInt();
+        for (int i = 0; i < terminals; i++) {
+            session.getTerminalList().add((SaTerminalInfo) readValue(r));
+        }
+        return session;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SaTerminalInfo readTerminal(BinaryReader r) {
+        SaTerminalInfo terminal = new SaTerminalInfo();
+        terminal.setIndex(r.readVarInt());
+        terminal.setTokenValue((String) readValue(r));
+        terminal.setDeviceType((String) readValue(r));
+        terminal.setDeviceId((String) readValue(r));
+        terminal.setExtraData((Map<String, Object>) readValue(r));
+        terminal.setCreateTime(r.readZigZagLong());
+        return terminal;
+    }
+
+    private Object readBean(BinaryReader r) {
+        String className = r.readString();
+        BeanCodec codec;
+        try {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            codec = BeanCodec.forType(Class.forName(className, false,
+                    loader != null ? loader : SaSerializerTemplateForBinary.class.getClassLoader()));
+        } catch (ClassNotFoundException ex) {
+            throw new SaTokenException(ex);
+        }
+        if (codec == null) {
+            throw new SaTokenException("binary serializer cannot decode " + className);
+        }
+        Object bean = codec.newInstance();
+        int fields = r.readVarInt();
+        for (int i = 0; i < fields; i++) {
+            String name = r.readString();
+            codec.set(bean, name, readValue(r));
+        }
+        return bean;
+    }
+
+    private Object readJdk(BinaryReader r) {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(r.readBytes()))) {
+            return ois.readObject();
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new SaTokenException(ex);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.it666.redis.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Immutable ketama-style consistent-hash ring: every node is placed at {@code virtualNodes}
+ * points on a 32-bit circle and a key belongs to the first point at or after its hash.
+ * Adding a node therefore only moves roughly {@code 1/N} of the keys.
+ */
+public final class ConsistentHashRing<T> {
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    private final Map<String, T> nodes;
+    private final TreeMap<Long, T> points = new TreeMap<>();
+
+    public ConsistentHashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("a hash ring needs at least one node");
+        }
+        this.nodes = Collections.unmodifiableMap(new LinkedHashMap<>(nodes));
+        for (Entry<String, T> node : nodes.entrySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(node.getKey() + "#" + i), node.getValue());
+            }
+        }
+    }
+
+    public T locate(long hash) {
+        Entry<Long, T> point = points.ceilingEntry(hash);
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    public Map<String, T> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Unsigned 32-bit position of {@code key} on the ring.
+     */
+    public static long hash(String key) {
+        byte[] digest = MD5.get().digest(key.getBytes(StandardCharsets.UTF_8));
+        return ((long) (digest[3] & 0xFF) << 24)
+                | ((long) (digest[2] & 0xFF) << 16)
+                | ((long) (digest[1] & 0xFF) << 8)
+                | (digest[0] & 0xFF);
+    }
+}
@@ -0,0 +1,71 @@
+package com.it666.redis.shard;
+
+import cn.dev33.satoken.dao.SaTokenDaoForRedisTemplate;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+
+/**
+ * One Redis endpoint of the sharded dao, with its own connection factory and Sa-Token Redis dao.
+ */
+public class RedisShard {
+
+    private final String name;
+    private final LettuceConnectionFactory connectionFactory;
+    private final StringRedisTemplate redisTemplate;
+    private final SaTokenDaoForRedisTemplate dao;
+
+    private RedisShard(String name, LettuceConnectionFactory connectionFactory) {
+        this.name = name;
+        this.connectionFactory = connectionFactory;
+        this.redisTemplate = new StringRedisTemplate(connectionFactory);
+        this.dao = new SaTokenDaoForRedisTemplate();
+        this.dao.init(connectionFactory);
+    }
+
+    /**
+     * @param endpoint {@code host:port}
+     */
+    public static RedisShard connect(String endpoint, int database, Duration timeout) {
+        int colon = endpoint.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("shard endpoint must be host:port, got " + endpoint);
+        }
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(
+                endpoint.substring(0, colon), Integer.parseInt(endpoint.substring(colon + 1)));
+        server.setDatabase(database);
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(server,
+                LettuceClientConfiguration.builder().commandTimeout(timeout).build());
+        factory.afterPropertiesSet();
+        return new RedisShard(endpoint, factory);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public StringRedisTemplate getRedisTemplate() {
+        return redisTemplate;
+    }
+
+    public SaTokenDaoForRedisTemplate getDao() {
+        return dao;
+    }
+
+    public Long keyCount() {
+        return redisTemplate.execute((RedisCallback<Long>) connection -> connection.serverCommands().dbSize());
+    }
+
+    public void close() {
+        connectionFactory.destroy();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,55 @@
+package com.it666.redis.shard;
+
+/**
+ * Maps Sa-Token keys to a position on the hash ring so that everything belonging to one account
+ * ends up on the same shard.
+ * <p>
+ * Keys are laid out as {@code <token-name>:<login-type>:<kind>:...:<id>}. Account keys
+ * ({@code session}, {@code disable}) hash their loginId. Token keys ({@code token},
+ * {@code token-session}, {@code last-active}, {@code safe}) only carry the token, so tokens issued
+ * in sharded mode start with the loginId's ring position ({@link #tagToken}) and are routed by that
+ * tag. Untagged tokens and any other key hash the full token or key.
+ */
+public final class ShardKeyRouter {
+
+    private static final int TAG_LENGTH = 8;
+    private static final char TAG_SEPARATOR = '_';
+
+    private ShardKeyRouter() {
+    }
+
+    public static String tagToken(Object loginId, String token) {
+        return String.format("%08x", ConsistentHashRing.hash(String.valueOf(loginId))) + TAG_SEPARATOR + token;
+    }
+
+    public static long routingHash(String key) {
+        String[] parts = key.split(":");
+        if (parts.length < 4) {
+            return ConsistentHashRing.hash(key);
+        }
+        String id = parts[parts.length - 1];
+        switch (parts[2]) {
+            case "session":
+            case "disable":
+                return ConsistentHashRing.hash(id);
+            case "token":
+            case "token-session":
+            case "last-active":
+            case "safe":
+                return tokenHash(id);
+            default:
+                return ConsistentHashRing.hash(key);
+        }
+    }
+
+    private static long tokenHash(String token) {
+        if (token.length() > TAG_LENGTH && token.charAt(TAG_LENGTH) == TAG_SEPARATOR) {
+            try {
+                return Long.parseLong(token.substring(0, TAG_LENGTH), 16);
+            } catch (NumberFormatException ignored) {
+                // not one of ours, fall through
+            }
+        }
+        return ConsistentHashRing.hash(token);
+    }
+}
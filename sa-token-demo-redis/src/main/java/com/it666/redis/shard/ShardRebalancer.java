@@ -0,0 +1,90 @@
+package com.it666.redis.shard;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Moves keys to the shard a new ring assigns them to.
+ * <p>
+ * A key is copied with {@code DUMP} / {@code RESTORE} (remaining TTL preserved, no overwrite) and then
+ * deleted from its old shard. If the target already holds the key, a newer value was written through
+ * the new ring in the meantime, so only the stale copy is dropped.
+ */
+public final class ShardRebalancer {
+
+    private static final long SCAN_COUNT = 500;
+
+    private ShardRebalancer() {
+    }
+
+    /**
+     * Scans {@code sources} for keys matching {@code pattern} and moves every key that
+     * {@code ring} places elsewhere.
+     */
+    public static Map<String, Object> rebalance(ConsistentHashRing<RedisShard> ring, Collection<RedisShard> sources,
+                                                String pattern) {
+        long started = System.currentTimeMillis();
+        Map<String, Object> moved = new LinkedHashMap<>();
+        long scanned = 0;
+        for (RedisShard source : sources) {
+            long movedFromSource = 0;
+            ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build();
+            try (Cursor<String> keys = source.getRedisTemplate().scan(options)) {
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    scanned++;
+                    RedisShard target = ring.locate(ShardKeyRouter.routingHash(key));
+                    if (target != source && move(key, source, target)) {
+                        movedFromSource++;
+                    }
+                }
+            }
+            moved.put(source.getName(), movedFromSource);
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("scanned", scanned);
+        report.put("moved", moved);
+        report.put("tookMs", System.currentTimeMillis() - started);
+        return report;
+    }
+
+    /**
+     * @return whether {@code key} existed on {@code from}
+     */
+    public static boolean move(String key, RedisShard from, RedisShard to) {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        byte[] value = from.getRedisTemplate().execute((RedisCallback<byte[]>) connection -> connection.keyCommands().dump(rawKey));
+        Long pttl = from.getRedisTemplate().execute((RedisCallback<Long>) connection -> connection.keyCommands().pTtl(rawKey));
+        if (value == null || pttl == null || pttl == -2) {
+            return false;
+        }
+        try {
+            to.getRedisTemplate().execute((RedisCallback<Object>) connection -> {
+                connection.keyCommands().restore(rawKey, pttl < 0 ? 0 : pttl, value, false);
+                return null;
+            });
+        } catch (DataAccessException ex) {
+            if (!isBusyKey(ex)) {
+                throw ex;
+            }
+        }
+        from.getRedisTemplate().delete(key);
+        return true;
+    }
+
+    private static boolean isBusyKey(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("BUSYKEY")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,211 @@
+package com.it666.redis.shard;
+
+import cn.dev33.satoken.dao.SaTokenDao;
+import cn.dev33.satoken.session.SaSession;
+import cn.dev33.satoken.util.SaFoxUtil;
+import com.it666.redis.dao.StorageStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spreads Sa-Token keys over several Redis endpoints with a {@link ConsistentHashRing}
+ * ({@code demo.storage-mode=sharded}); see {@link ShardKeyRouter} for how keys are placed.
+ * <p>
+ * While a previous ring is configured (a shard was just added or removed), every access first moves
+ * the key from its old shard if it is still there, so nothing is lost before {@link #rebalance}
+ * has copied the rest.
+ */
+public class ShardedSaTokenDao implements SaTokenDao, StorageStats {
+
+    private final Map<String, RedisShard> shards;
+    private final Map<String, LongAdder> routedOps = new LinkedHashMap<>();
+    private final AtomicLong movedOnAccess = new AtomicLong();
+    private final int virtualNodes;
+
+    private final ConsistentHashRing<RedisShard> ring;
+    private volatile ConsistentHashRing<RedisShard> previousRing;
+
+    /**
+     * @param shards        every endpoint referenced by either ring, keyed by name
+     * @param previousRing  placement before the last topology change, or {@code null}
+     */
+    public ShardedSaTokenDao(Map<String, RedisShard> shards, ConsistentHashRing<RedisShard> ring,
+                             ConsistentHashRing<RedisShard> previousRing, int virtualNodes) {
+        this.shards = shards;
+        this.ring = ring;
+        this.previousRing = previousRing;
+        this.virtualNodes = virtualNodes;
+        for (String name : shards.keySet()) {
+            routedOps.put(name, new LongAdder());
+        }
+    }
+
+    /**
+     * Moves every key on every shard to where the current ring puts it and then stops
+     * checking the previous placement.
+     */
+    public synchronized Map<String, Object> rebalance(String pattern) {
+        Map<String, Object> report = ShardRebalancer.rebalance(ring, shards.values(), pattern);
+        previousRing = null;
+        return report;
+    }
+
+    /**
+     * Every endpoint referenced by either ring.
+     */
+    public Collection<RedisShard> getShards() {
+        return shards.values();
+    }
+
+    public boolean isMigrating() {
+        return previousRing != null;
+    }
+
+    @Override
+    public String get(String key) {
+        return route(key).get(key);
+    }
+
+    @Override
+    public void set(String key, String value, long timeout) {
+        route(key).set(key, value, timeout);
+    }
+
+    @Override
+    public void update(String key, String value) {
+        route(key).update(key, value);
+    }
+
+    @Override
+    public void delete(String key) {
+        route(key).delete(key);
+    }
+
+    @Override
+    public long getTimeout(String key) {
+        return route(key).getTimeout(key);
+    }
+
+    @Override
+    public void updateTimeout(String key, long timeout) {
+        route(key).updateTimeout(key, timeout);
+    }
+
+    @Override
+    public Object getObject(String key) {
+        return route(key).getObject(key);
+    }
+
+    @Override
+    public <T> T getObject(String key, Class<T> classType) {
+        return route(key).getObject(key, classType);
+    }
+
+    @Override
+    public void setObject(String key, Object object, long timeout) {
+        route(key).setObject(key, object, timeout);
+    }
+
+    @Override
+    public void updateObject(String key, Object object) {
+        route(key).updateObject(key, object);
+    }
+
+    @Override
+    public void deleteObject(String key) {
+        route(key).deleteObject(key);
+    }
+
+    @Override
+    public long getObjectTimeout(String key) {
+        return route(key).getObjectTimeout(key);
+    }
+
+    @Override
+    public void updateObjectTimeout(String key, long timeout) {
+        route(key).updateObjectTimeout(key, timeout);
+    }
+
+    @Override
+    public SaSession getSession(String sessionId) {
+        return route(sessionId).getSession(sessionId);
+    }
+
+    @Override
+    public void setSession(SaSession session, long timeout) {
+        route(session.getId()).setSession(session, timeout);
+    }
+
+    @Override
+    public void updateSession(SaSession session) {
+        route(session.getId()).updateSession(session);
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        route(sessionId).deleteSession(sessionId);
+    }
+
+    @Override
+    public long getSessionTimeout(String sessionId) {
+        return route(sessionId).getSessionTimeout(sessionId);
+    }
+
+    @Override
+    public void updateSessionTimeout(String sessionId, long timeout) {
+        route(sessionId).updateSessionTimeout(sessionId, timeout);
+    }
+
+    @Override
+    public List<String> searchData(String prefix, String keyword, int start, int size, boolean sortType) {
+        List<String> keys = new ArrayList<>();
+        for (RedisShard shard : shards.values()) {
+            keys.addAll(shard.getDao().searchData(prefix, keyword, 0, -1, true));
+        }
+        return SaFoxUtil.searchList(keys, start, size, sortType);
+    }
+
+    @Override
+    public void destroy() {
+        shards.values().forEach(RedisShard::close);
+    }
+
+    @Override
+    public Map<String, Object> storageStats() {
+        Map<String, Object> perShard = new LinkedHashMap<>();
+        Collection<RedisShard> active = ring.getNodes().values();
+        for (RedisShard shard : shards.values()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("inRing", active.contains(shard));
+            stats.put("keys", shard.keyCount());
+            stats.put("routedOps", routedOps.get(shard.getName()).sum());
+            perShard.put(shard.getName(), stats);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("virtualNodes", virtualNodes);
+        stats.put("migrating", isMigrating());
+        stats.put("movedOnAccess", movedOnAccess.get());
+        stats.put("shards", perShard);
+        return stats;
+    }
+
+    private SaTokenDao route(String key) {
+        long hash = ShardKeyRouter.routingHash(key);
+        RedisShard owner = ring.locate(hash);
+        ConsistentHashRing<RedisShard> previous = previousRing;
+        if (previous != null) {
+            RedisShard old = previous.locate(hash);
+            if (old != owner && ShardRebalancer.move(key, old, owner)) {
+                movedOnAccess.incrementAndGet();
+            }
+        }
+        routedOps.get(owner.getName()).increment();
+        return owner.getDao();
+    }
+}
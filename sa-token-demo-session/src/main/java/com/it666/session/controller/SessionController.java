@@ -8,7 +8,7 @@ import com.it666.session.dto.LoginDTO;
 import com.it666.session.entity.UserInfo;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -41,14 +41,11 @@ public class SessionController {
 
     /**
      * 获取 Session 中的所有数据
+     * <p>
+     * 会话已经在 getSession 时一次性读出，这里直接返回其数据的只读视图，不逐个 key 复制
      */
     private Map<String, Object> getSessionData(SaSession session) {
-        Map<String, Object> data = new HashMap<>();
-        // 遍历 session 中的所有 key
-        for (String key : session.keys()) {
-            data.put(key, session.get(key));
-        }
-        return data;
+        return Collections.unmodifiableMap(session.getDataMap());
     }
 
     // ==================== 1. 登录与 Session 存储 ====================